@@ -0,0 +1,84 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcasts through a BufferedSMSSender writing into a discarding channel, either with the sender and message
+ * encoded once per broadcast or through the plain per-receiver {@link SMSSender#send(String, String, String)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class BroadcastEncodingBenchmark {
+
+    private static final String MESSAGE = "Hello, this is a benchmark message.";
+    private static final String SENDER_IDENTIFIER = "number0";
+
+    @Param({"100000"})
+    private int subscribers;
+
+    @Param({"true", "false"})
+    private boolean encodeOnce;
+
+    private BufferedSMSSender bufferedSender;
+    private SMSCenter smsCenter;
+
+    @Setup
+    public void setup() {
+        bufferedSender = new BufferedSMSSender(new DiscardingChannel(), true, BufferedSMSSender.DEFAULT_BUFFER_SIZE, 0);
+        SMSSender smsSender = encodeOnce ? bufferedSender : bufferedSender::send;
+        smsCenter = new SMSCenter(smsSender);
+
+        for (int i = 0; i < subscribers; i++) {
+            String identifier = "number" + i;
+            smsCenter.register(identifier, String.format("+3699%07d", i));
+            smsCenter.subscribe(identifier);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        bufferedSender.close();
+    }
+
+    @Benchmark
+    public void sendBroadcast() {
+        smsCenter.sendBroadcast(SENDER_IDENTIFIER, MESSAGE);
+    }
+
+    private static class DiscardingChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
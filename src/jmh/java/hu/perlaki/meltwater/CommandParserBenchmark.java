@@ -0,0 +1,66 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class CommandParserBenchmark {
+
+    private static final int LINES = 1024;
+
+    @Param({"register", "subscribe", "group", "message"})
+    private String lineType;
+
+    private final CommandParser commandParser = new CommandParser();
+    private final Command command = new Command();
+
+    private byte[][] lines;
+    private int next;
+
+    @Setup
+    public void setup() {
+        lines = new byte[LINES][];
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = line(i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public Command parseLine() {
+        byte[] line = lines[next++ & (LINES - 1)];
+        commandParser.parse(line, 0, line.length, command);
+        return command;
+    }
+
+    private String line(int index) {
+        switch (lineType) {
+            case "register":
+                return String.format("number%d +3699%07d", index, index * 7919);
+            case "subscribe":
+                return "subscribe number" + index;
+            case "group":
+                return "group" + index + " +36990* +369912* +3699123*";
+            case "message":
+                return "message number0 number" + index + ",group1,broadcast \"Hello, this is a benchmark message.\"";
+            default:
+                throw new IllegalArgumentException("Unknown line type: " + lineType);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package hu.perlaki.meltwater;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loopback load test of CommandServer: every producer registers and subscribes its own numbers, then pipelines direct
+ * messages to them over its own connection while a second thread counts the acknowledgements. Prints the commands per
+ * second over all producers. Arguments: producers (4), messages per producer (250000).
+ */
+public class CommandServerLoadTest {
+
+    private static final int NUMBERS_PER_PRODUCER = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int messagesPerProducer = args.length > 1 ? Integer.parseInt(args[1]) : 250_000;
+
+        SMSCenter smsCenter = new SMSCenter((senderPhoneNumber, receiverPhoneNumber, message) -> { });
+        CommandServer commandServer = new CommandServer(smsCenter, new InetSocketAddress("127.0.0.1", 0), SMSMetrics.NONE);
+        commandServer.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers * 2);
+        try {
+            long startTime = System.nanoTime();
+
+            List<Future<Long>> results = new ArrayList<>();
+            for (int producer = 0; producer < producers; producer++) {
+                int producerIndex = producer;
+                results.add(executor.submit(() ->
+                        produce(executor, commandServer.getPort(), producerIndex, messagesPerProducer)));
+            }
+
+            long commands = 0;
+            for (Future<Long> result : results) {
+                commands += result.get();
+            }
+
+            long elapsedNanos = System.nanoTime() - startTime;
+            System.out.printf("%d producers, %d commands in %d ms: %d commands/s%n", producers, commands,
+                    elapsedNanos / 1_000_000, commands * 1_000_000_000L / elapsedNanos);
+        } finally {
+            executor.shutdownNow();
+            commandServer.close();
+        }
+    }
+
+    private static long produce(ExecutorService executor, int port, int producer, int messages) throws Exception {
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            Future<Long> acknowledgements = executor.submit(() -> countAcknowledgements(socket));
+
+            long commands = 2L * NUMBERS_PER_PRODUCER + messages;
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+            for (int i = 0; i < NUMBERS_PER_PRODUCER; i++) {
+                write(output, String.format("number%d-%d +3699%07d%n", producer, i, producer * NUMBERS_PER_PRODUCER + i));
+                write(output, String.format("subscribe number%d-%d%n", producer, i));
+            }
+            for (int i = 0; i < messages; i++) {
+                write(output, "message number" + producer + "-" + (i % NUMBERS_PER_PRODUCER)
+                        + " number" + producer + "-" + ((i + 1) % NUMBERS_PER_PRODUCER) + " \"Load test message\"\n");
+            }
+            output.flush();
+            socket.shutdownOutput();
+
+            long acknowledged = acknowledgements.get();
+            if(acknowledged != commands) {
+                throw new IllegalStateException("Only " + acknowledged + " of " + commands + " commands were acknowledged");
+            }
+            return commands;
+        }
+    }
+
+    private static void write(OutputStream output, String line) throws IOException {
+        output.write(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long countAcknowledgements(Socket socket) {
+        long acknowledged = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (String response = reader.readLine(); response != null; response = reader.readLine()) {
+                acknowledged += response.startsWith("OK ") ? Long.parseLong(response.substring(3)) : 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return acknowledged;
+    }
+}
@@ -0,0 +1,76 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscribe, send and unsubscribe churn on a shared {@link ConcurrentSMSCenter}, every thread on its own numbers.
+ * Run it with different thread counts, e.g. {@code -t 1}, {@code -t 2} and {@code -t 4}, to see how it scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class ConcurrentSMSCenterBenchmark {
+
+    private static final String MESSAGE = "Benchmark message";
+    private static final String SENDER_IDENTIFIER = "number0";
+    private static final String SENDER_PHONE_NUMBER = "+3610000000";
+    private static final int NUMBERS_PER_THREAD = 1000;
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private ConcurrentSMSCenter smsCenter;
+
+    @State(Scope.Thread)
+    public static class ThreadNumbers {
+
+        private String[] identifiers;
+        private int next;
+
+        @Setup
+        public void setup(ConcurrentSMSCenterBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+            identifiers = new String[NUMBERS_PER_THREAD];
+            for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+                identifiers[i] = "number" + thread + "_" + i;
+                benchmark.smsCenter.register(identifiers[i], String.format("+36%02d%07d", thread, i));
+            }
+        }
+
+        String nextIdentifier() {
+            if(++next == NUMBERS_PER_THREAD) {
+                next = 0;
+            }
+            return identifiers[next];
+        }
+    }
+
+    @Setup
+    public void setup() {
+        // a Blackhole belongs to a single thread, the deliveries are simply dropped
+        smsCenter = new ConcurrentSMSCenter((sender, receiver, message) -> { });
+        smsCenter.register(SENDER_IDENTIFIER, SENDER_PHONE_NUMBER);
+        smsCenter.subscribe(SENDER_IDENTIFIER);
+    }
+
+    @Benchmark
+    public void subscribeSendUnsubscribe(ThreadNumbers numbers) {
+        String identifier = numbers.nextIdentifier();
+        smsCenter.subscribe(identifier);
+        smsCenter.sendMessage(SENDER_IDENTIFIER, identifier, MESSAGE);
+        smsCenter.unsubscribe(identifier);
+    }
+}
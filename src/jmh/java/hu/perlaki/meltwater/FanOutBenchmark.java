@@ -0,0 +1,102 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class FanOutBenchmark {
+
+    private static final String MESSAGE = "Benchmark message";
+    private static final String SENDER_IDENTIFIER = "number0";
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    @Param({"100000", "1000000"})
+    private int subscribers;
+
+    /**
+     * {@code blackhole-<cost>} burns a simulated cost of handing a message over, in {@link Blackhole#consumeCPU(long)}
+     * tokens, without any lock. {@code buffered} is the {@link BufferedSMSSender} of the application writing into a
+     * discarding channel, every delivery of every thread takes its monitor.
+     */
+    @Param({"blackhole-0", "blackhole-100", "buffered"})
+    private String transport;
+
+    private SMSCenter smsCenter;
+
+    @Setup
+    public void setup() {
+        SMSSender smsSender;
+        if(transport.equals("buffered")) {
+            smsSender = new BufferedSMSSender(new DiscardingChannel(), false, BufferedSMSSender.DEFAULT_BUFFER_SIZE, 0);
+        } else {
+            long deliveryCost = Long.parseLong(transport.substring("blackhole-".length()));
+            smsSender = (senderPhoneNumber, receiverPhoneNumber, message) -> Blackhole.consumeCPU(deliveryCost);
+        }
+        smsCenter = new SMSCenter(smsSender);
+        smsCenter.setFanOut(new ParallelFanOut(parallelism, ParallelFanOut.DEFAULT_THRESHOLD));
+
+        for (int i = 0; i < subscribers; i++) {
+            String identifier = "number" + i;
+            smsCenter.register(identifier, String.format("+3699%07d", i));
+            smsCenter.subscribe(identifier);
+        }
+        smsCenter.createGroup("group1", Collections.singletonList("+36990*"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        smsCenter.close();
+    }
+
+    @Benchmark
+    public void sendBroadcast() {
+        smsCenter.sendBroadcast(SENDER_IDENTIFIER, MESSAGE);
+    }
+
+    @Benchmark
+    public void sendGroupMessage() {
+        smsCenter.sendGroupMessage(SENDER_IDENTIFIER, "group1", MESSAGE);
+    }
+
+    private static class DiscardingChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
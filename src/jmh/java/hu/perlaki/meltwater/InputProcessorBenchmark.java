@@ -0,0 +1,83 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class InputProcessorBenchmark {
+
+    private static final int SUBSCRIBERS = 1000;
+
+    @Param({"subscribe", "message", "groupMessage"})
+    private String lineType;
+
+    private InputProcessor inputProcessor;
+    private byte[][] lines;
+    private int next;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        SMSCenter smsCenter = new SMSCenter(new BlackholeSMSSender(blackhole));
+        inputProcessor = new InputProcessor(smsCenter);
+
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            process(String.format("number%d +3699%07d", i, i * 7919));
+            process("subscribe number" + i);
+        }
+        process("group1 +36990* +36991*");
+
+        lines = new byte[SUBSCRIBERS][];
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            lines[i] = line(i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public void processLine() {
+        byte[] line = nextLine();
+        inputProcessor.processLine(line, 0, line.length);
+    }
+
+    private String line(int index) {
+        switch (lineType) {
+            case "subscribe":
+                return "subscribe number" + index;
+            case "message":
+                return "message number0 number" + index + " \"Hello, this is a benchmark message.\"";
+            case "groupMessage":
+                return "message number" + index + " group1 \"Hello, this is a benchmark message.\"";
+            default:
+                throw new IllegalArgumentException("Unknown line type: " + lineType);
+        }
+    }
+
+    private byte[] nextLine() {
+        if(++next == lines.length) {
+            next = 0;
+        }
+        return lines[next];
+    }
+
+    private void process(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        inputProcessor.processLine(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,134 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the same generated command history from the text input and from its binary form, each into a new
+ * SMSCenter, or into a service that ignores every command to measure only the reading and dispatching.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class ReplayBenchmark {
+
+    private static final int NUMBERS = 10_000;
+    private static final int MESSAGES = 200_000;
+
+    @Param({"text", "binary"})
+    private String format;
+
+    @Param({"center", "ignore"})
+    private String service;
+
+    private Path textPath;
+    private Path binaryPath;
+    private SMSService smsCenter;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        textPath = Files.createTempFile("commands", ".txt");
+        binaryPath = Files.createTempFile("commands", ".bin");
+
+        Random random = new Random(42);
+        try(BufferedWriter writer = Files.newBufferedWriter(textPath, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < NUMBERS; i++) {
+                writer.write(String.format("number%d +3699%07d%n", i, random.nextInt(10_000_000)));
+                writer.write(String.format("subscribe number%d%n", i));
+            }
+            writer.write("group1 +36990* +36991*\n");
+            for (int i = 0; i < MESSAGES; i++) {
+                String receiver = i % 1000 == 0 ? "group1" : "number" + random.nextInt(NUMBERS);
+                writer.write(String.format("message number%d %s \"Replayed message %d\"%n", random.nextInt(NUMBERS), receiver, i % 100));
+            }
+        }
+        new BinaryCommandConverter().convert(textPath, binaryPath);
+    }
+
+    @Setup(Level.Invocation)
+    public void createCenter(Blackhole blackhole) {
+        smsCenter = "center".equals(service) ? new SMSCenter(new BlackholeSMSSender(blackhole)) : new IgnoringSMSService(blackhole);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(textPath);
+        Files.deleteIfExists(binaryPath);
+    }
+
+    @Benchmark
+    public void replay() {
+        if("binary".equals(format)) {
+            new BinaryCommandReplayer(smsCenter, SMSMetrics.NONE).replay(binaryPath);
+        } else {
+            new InputProcessor(smsCenter, textPath).process();
+        }
+    }
+
+    private static class IgnoringSMSService implements SMSService {
+        private final Blackhole blackhole;
+
+        IgnoringSMSService(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void register(String identifier, String phoneNumber) {
+            blackhole.consume(phoneNumber);
+        }
+
+        @Override
+        public void subscribe(String identifier) {
+            blackhole.consume(identifier);
+        }
+
+        @Override
+        public void unsubscribe(String identifier) {
+            blackhole.consume(identifier);
+        }
+
+        @Override
+        public void createGroup(String groupIdentifier, List<String> phonePatterns) {
+            blackhole.consume(phonePatterns);
+        }
+
+        @Override
+        public void sendMessage(String senderIdentifier, String receiverIdentifier, String message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void sendBroadcast(String senderIdentifier, String message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void sendGroupMessage(String senderIdentifier, String groupIdentifier, String message) {
+            blackhole.consume(message);
+        }
+    }
+}
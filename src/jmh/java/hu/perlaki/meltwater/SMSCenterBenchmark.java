@@ -0,0 +1,120 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class SMSCenterBenchmark {
+
+    private static final String MESSAGE = "Benchmark message";
+    private static final String SENDER_IDENTIFIER = "number0";
+    private static final String OFFLINE_IDENTIFIER = "offline";
+    private static final String OFFLINE_PHONE_NUMBER = "+36100000000";
+
+    @Param({"1000", "100000"})
+    private int subscribers;
+
+    @Param({"1", "100"})
+    private int groups;
+
+    @Param({"1", "4"})
+    private int patternsPerGroup;
+
+    @Param({"10"})
+    private int heldMessages;
+
+    private SMSCenter smsCenter;
+    private String[] identifiers;
+    private String[] phoneNumbers;
+    private String[] groupIdentifiers;
+    private int next;
+    private int nextGroup;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        smsCenter = new SMSCenter(new BlackholeSMSSender(blackhole));
+
+        Random random = new Random(42);
+        identifiers = new String[subscribers];
+        phoneNumbers = new String[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            identifiers[i] = "number" + i;
+            phoneNumbers[i] = String.format("+3699%07d", random.nextInt(10_000_000));
+            smsCenter.register(identifiers[i], phoneNumbers[i]);
+            smsCenter.subscribe(identifiers[i]);
+        }
+        smsCenter.register(OFFLINE_IDENTIFIER, OFFLINE_PHONE_NUMBER);
+
+        groupIdentifiers = new String[groups];
+        for (int i = 0; i < groups; i++) {
+            List<String> phonePatterns = new ArrayList<>();
+            for (int j = 0; j < patternsPerGroup; j++) {
+                phonePatterns.add(phoneNumbers[random.nextInt(subscribers)].substring(0, 7 + j % 4) + "*");
+            }
+            groupIdentifiers[i] = "group" + i;
+            smsCenter.createGroup(groupIdentifiers[i], phonePatterns);
+        }
+    }
+
+    @Benchmark
+    public void register() {
+        String identifier = identifiers[nextIndex()] + "-alias";
+        smsCenter.register(identifier, OFFLINE_PHONE_NUMBER);
+        // keeps the registry at a steady size, registering the same identifier twice is an error
+        smsCenter.registeredNumbers.remove(identifier);
+    }
+
+    @Benchmark
+    public void subscribeDrainingHeldMessages() {
+        for (int i = 0; i < heldMessages; i++) {
+            smsCenter.sendMessage(SENDER_IDENTIFIER, OFFLINE_IDENTIFIER, MESSAGE);
+        }
+        smsCenter.subscribe(OFFLINE_IDENTIFIER);
+        smsCenter.unsubscribe(OFFLINE_IDENTIFIER);
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        smsCenter.sendMessage(SENDER_IDENTIFIER, identifiers[nextIndex()], MESSAGE);
+    }
+
+    @Benchmark
+    public void sendBroadcast() {
+        smsCenter.sendBroadcast(SENDER_IDENTIFIER, MESSAGE);
+    }
+
+    @Benchmark
+    public void sendGroupMessage() {
+        if(++nextGroup == groups) {
+            nextGroup = 0;
+        }
+        smsCenter.sendGroupMessage(SENDER_IDENTIFIER, groupIdentifiers[nextGroup], MESSAGE);
+    }
+
+    private int nextIndex() {
+        if(++next == subscribers) {
+            next = 0;
+        }
+        return next;
+    }
+}
@@ -0,0 +1,116 @@
+package hu.perlaki.meltwater;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end run of a workload through the same center and sender wiring as {@link Application}, configured by the
+ * same {@code sms.*} system properties, with a transport that only counts the deliveries. The inputs are the files
+ * given as arguments, or a file generated by {@link WorkloadGenerator} from the {@code workload.*} system properties.
+ * <p>
+ * Prints the commands and deliveries per second, the 99th percentile of the command latency and the peak heap usage.
+ * The latency of a command is the time until the next command starts on the same thread, so parsing is included.
+ * The peak heap is the sum of the peak usages of the heap memory pools.
+ */
+public class ThroughputHarness {
+
+    public static void main(String[] args) throws Exception {
+        List<Path> inputPaths = new ArrayList<>();
+        for (String arg : args) {
+            inputPaths.add(Paths.get(arg));
+        }
+
+        Path generatedPath = null;
+        if(inputPaths.isEmpty()) {
+            WorkloadGenerator.Workload workload = WorkloadGenerator.Workload.fromSystemProperties();
+            generatedPath = Files.createTempFile("workload", ".txt");
+            long generatedCommands = new WorkloadGenerator(workload).generate(generatedPath);
+            System.out.printf("Generated %d commands of %s%n", generatedCommands, workload);
+            inputPaths.add(generatedPath);
+        }
+
+        try {
+            run(inputPaths);
+        } finally {
+            if(generatedPath != null) {
+                Files.delete(generatedPath);
+            }
+        }
+    }
+
+    private static void run(List<Path> inputPaths) {
+        CountingSMSSender transport = new CountingSMSSender();
+        CommandLatencies latencies = new CommandLatencies();
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        long startTime = System.nanoTime();
+        SMSSender smsSender = Application.createSMSSender(transport, null);
+        SMSService smsCenter = Application.createSMSCenter(smsSender, null);
+        try {
+            Application.process(smsCenter, inputPaths, latencies);
+        } finally {
+            smsCenter.close();
+            smsSender.close();
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        long commands = latencies.commands.sum();
+        long deliveries = transport.deliveries.sum();
+        System.out.printf("%d commands in %d ms: %d commands/s, %d deliveries/s, p99 command latency %.1f us, "
+                        + "peak heap %d MB%n",
+                commands, elapsedNanos / 1_000_000, commands * 1_000_000_000L / elapsedNanos,
+                deliveries * 1_000_000_000L / elapsedNanos,
+                latencies.histogram.valueAtPercentile(99) / 1000.0, peakHeap >> 20);
+    }
+
+    private static class CountingSMSSender implements FanOutSMSSender {
+        private final LongAdder deliveries = new LongAdder();
+
+        @Override
+        public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+            deliveries.increment();
+        }
+
+        @Override
+        public void send(EncodedMessage message, long receiverPhoneNumber) {
+            deliveries.increment();
+        }
+    }
+
+    private static class CommandLatencies implements SMSMetrics {
+        private final LongAdder commands = new LongAdder();
+        private final LogLinearHistogram histogram = new LogLinearHistogram();
+        private final ThreadLocal<long[]> lastCommandStart = ThreadLocal.withInitial(() -> new long[1]);
+
+        @Override
+        public void commandProcessed(Command.Type type) {
+            long now = System.nanoTime();
+            long[] lastStart = lastCommandStart.get();
+            if(lastStart[0] != 0) {
+                histogram.record(now - lastStart[0]);
+            }
+            lastStart[0] = now;
+            commands.increment();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package hu.perlaki.meltwater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules {@code pending} deliveries spread over a minute of 1 ms ticks and then expires all of them, with the
+ * timing wheel of ScheduledSMSSender and with a priority queue ordered by deadline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class TimingWheelBenchmark {
+
+    private static final int HORIZON_TICKS = 60_000;
+
+    @Param({"100000", "1000000"})
+    private int pending;
+
+    private long[] deadlines;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        Random random = new Random(42);
+        deadlines = new long[pending];
+        for (int i = 0; i < pending; i++) {
+            deadlines[i] = 1 + random.nextInt(HORIZON_TICKS);
+        }
+    }
+
+    @Benchmark
+    public void timingWheel() {
+        TimingWheel wheel = new TimingWheel(0);
+        for (long deadline : deadlines) {
+            wheel.schedule(new TimingWheel.Timer() {
+                @Override
+                protected void expire() {
+                    blackhole.consume(this);
+                }
+            }, deadline);
+        }
+        wheel.advanceTo(HORIZON_TICKS);
+    }
+
+    @Benchmark
+    public void priorityQueue() {
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        for (long deadline : deadlines) {
+            queue.add(new long[]{deadline});
+        }
+        for (long tick = 1; tick <= HORIZON_TICKS; tick++) {
+            while(!queue.isEmpty() && queue.peek()[0] <= tick) {
+                blackhole.consume(queue.poll());
+            }
+        }
+    }
+}
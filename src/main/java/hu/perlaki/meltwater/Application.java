@@ -2,14 +2,275 @@ package hu.perlaki.meltwater;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
 @Slf4j
 public class Application {
 
     public static void main(String args[]) {
-        SMSSender smsSender = new SMSSender();
-        SMSCenter smsCenter = new SMSCenter(smsSender);
-        InputProcessor processor = new InputProcessor(smsCenter);
+        SMSMetricsRegistry metrics = Boolean.getBoolean("sms.metrics") ? new SMSMetricsRegistry() : null;
+        SMSSender smsSender = createSMSSender(metrics);
+        SMSService smsCenter = createSMSCenter(smsSender, metrics);
+        MetricsFileReporter metricsReporter = createMetricsReporter(metrics);
+
+        List<Path> inputPaths = new ArrayList<>();
+        for (String arg : args) {
+            inputPaths.add(Paths.get(arg));
+        }
+        if(inputPaths.isEmpty()) {
+            inputPaths.add(InputProcessor.DEFAULT_INPUT_PATH);
+        }
+
+        try {
+            SMSMetrics commandMetrics = metrics != null ? metrics : SMSMetrics.NONE;
+            Integer serverPort = Integer.getInteger("sms.server.port");
+            if(serverPort != null) {
+                serve(smsCenter, new InetSocketAddress(System.getProperty("sms.server.host", "127.0.0.1"), serverPort),
+                        commandMetrics);
+            } else if(Boolean.getBoolean("sms.follow")) {
+                follow(smsCenter, inputPaths, commandMetrics);
+            } else {
+                process(smsCenter, inputPaths, commandMetrics);
+            }
+        } finally {
+            smsCenter.close();
+            smsSender.close();
+            if(metricsReporter != null) {
+                metricsReporter.close();
+            }
+        }
+    }
+
+    static SMSService createSMSCenter(SMSSender smsSender, SMSMetricsRegistry metrics) {
+        SMSService smsCenter = createSMSCenter(smsSender, name -> createHeldMessageStore(name, metrics));
+        if(metrics != null) {
+            smsCenter.setMetrics(metrics);
+        }
+        String auditDirectory = System.getProperty("sms.audit");
+        if(auditDirectory != null) {
+            smsCenter.setAuditTrail(new BinaryAuditJournal(Paths.get(auditDirectory),
+                    Integer.getInteger("sms.audit.fileSize", BinaryAuditJournal.DEFAULT_FILE_SIZE),
+                    BinaryAuditJournal.DEFAULT_RING_BLOCKS));
+        }
+        return smsCenter;
+    }
+
+    private static SMSService createSMSCenter(SMSSender smsSender, Function<String, HeldMessageStore> heldMessageStores) {
+        String centerType = System.getProperty("sms.center", "simple");
+        if(Boolean.getBoolean("sms.pipeline")
+                && (!"simple".equals(centerType) || System.getProperty("sms.fanout.parallelism") != null)) {
+            throw new RuntimeException("The pipeline needs the simple SMS center without parallel fan-out");
+        }
+
+        switch (centerType) {
+            case "simple":
+                SMSCenter simpleCenter = new SMSCenter(smsSender, heldMessageStores.apply("held"));
+                Integer fanOutParallelism = Integer.getInteger("sms.fanout.parallelism");
+                if(fanOutParallelism != null) {
+                    simpleCenter.setFanOut(new ParallelFanOut(fanOutParallelism,
+                            Integer.getInteger("sms.fanout.threshold", ParallelFanOut.DEFAULT_THRESHOLD)));
+                }
+                String stateDirectory = System.getProperty("sms.state");
+                if(stateDirectory != null) {
+                    SMSCenterPersistence.open(Paths.get(stateDirectory), simpleCenter,
+                            Long.getLong("sms.snapshot.interval", SMSCenterPersistence.DEFAULT_SNAPSHOT_INTERVAL),
+                            Boolean.getBoolean("sms.state.fsync"));
+                }
+                return simpleCenter;
+            case "concurrent":
+                return new ConcurrentSMSCenter(smsSender, heldMessageStores.apply("held"));
+            case "sharded":
+                return ShardedSMSCenter.withUniformPrefixes(smsSender,
+                        System.getProperty("sms.shard.prefix", "+36"),
+                        Integer.getInteger("sms.shards", Runtime.getRuntime().availableProcessors()),
+                        shardIndex -> heldMessageStores.apply("held-" + shardIndex));
+            default:
+                throw new RuntimeException("Unknown SMS center type: " + centerType);
+        }
+    }
+
+    private static void serve(SMSService smsCenter, InetSocketAddress address, SMSMetrics metrics) {
+        CommandServer commandServer = new CommandServer(smsCenter, address, metrics);
+        Thread mainThread = Thread.currentThread();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            commandServer.close();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "command-server-shutdown"));
+
+        commandServer.start();
+        try {
+            commandServer.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while serving commands", e);
+        }
+    }
+
+    private static void follow(SMSService smsCenter, List<Path> inputPaths, SMSMetrics metrics) {
+        InputFollower inputFollower = new InputFollower(smsCenter, metrics, inputPaths,
+                Paths.get(System.getProperty("sms.follow.checkpoint", "input.checkpoint")),
+                Long.getLong("sms.follow.checkpointInterval", InputFollower.DEFAULT_CHECKPOINT_INTERVAL_MILLIS));
+        Thread mainThread = Thread.currentThread();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            inputFollower.close();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "input-follower-shutdown"));
+
+        inputFollower.follow();
+    }
+
+    /**
+     * Processes the inputs one after the other on the simple SMSCenter, and each on its own thread otherwise.
+     */
+    static void process(SMSService smsCenter, List<Path> inputPaths, SMSMetrics metrics) {
+        if(smsCenter instanceof SMSCenter) {
+            inputPaths.forEach(inputPath -> process(smsCenter, inputPath, metrics));
+        } else {
+            processConcurrently(smsCenter, inputPaths, metrics);
+        }
+    }
+
+    private static void process(SMSService smsCenter, Path inputPath, SMSMetrics metrics) {
+        if(BinaryCommandFormat.isBinary(inputPath)) {
+            new BinaryCommandReplayer(smsCenter, metrics).replay(inputPath);
+        } else if(Boolean.getBoolean("sms.pipeline")) {
+            new CommandPipeline(smsCenter, metrics, pipelineCapacity(), pipelineWaitStrategy()).process(inputPath);
+        } else {
+            new InputProcessor(smsCenter, inputPath, metrics).process();
+        }
+    }
+
+    private static void processConcurrently(SMSService smsCenter, List<Path> inputPaths, SMSMetrics metrics) {
+        List<Thread> threads = new ArrayList<>();
+        for (Path inputPath : inputPaths) {
+            Thread thread = new Thread(() -> process(smsCenter, inputPath, metrics),
+                    "input-" + inputPath.getFileName());
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while waiting for the input processors", e);
+                return;
+            }
+        }
+    }
+
+    private static MetricsFileReporter createMetricsReporter(SMSMetricsRegistry metrics) {
+        if(metrics == null) {
+            return null;
+        }
+
+        if(Boolean.getBoolean("sms.metrics.jmx")) {
+            metrics.registerMBean();
+        }
+
+        String outputPath = System.getProperty("sms.metrics.file");
+        if(outputPath == null) {
+            return null;
+        }
+
+        MetricsFileReporter metricsReporter = new MetricsFileReporter(metrics, Paths.get(outputPath));
+        metricsReporter.start(Long.getLong("sms.metrics.interval", 10_000));
+        return metricsReporter;
+    }
+
+    private static HeldMessageStore createHeldMessageStore(String name, SMSMetricsRegistry metrics) {
+        String spillDirectory = System.getProperty("sms.held.spill");
+
+        HeldMessageStore heldMessageStore = new BoundedHeldMessageStore(
+                Integer.getInteger("sms.held.perReceiver", BoundedHeldMessageStore.UNLIMITED),
+                Long.getLong("sms.held.max", BoundedHeldMessageStore.UNLIMITED),
+                Long.getLong("sms.held.ttl", 0),
+                Long.getLong("sms.held.heap", BoundedHeldMessageStore.UNLIMITED),
+                spillDirectory != null ? new SpillSegment(Paths.get(spillDirectory, name + ".spill")) : null);
+
+        if(metrics != null) {
+            metrics.addHeldMessageStore(heldMessageStore);
+        }
+        return heldMessageStore;
+    }
+
+    private static SMSSender createSMSSender(SMSMetricsRegistry metrics) {
+        return createSMSSender(createTransport(), metrics);
+    }
+
+    /**
+     * Wraps the transport into the senders configured by the system properties. The metered sender wraps the
+     * transport itself, so the send time is the time of the hand-over, not of queueing or scheduling it.
+     */
+    static SMSSender createSMSSender(SMSSender transport, SMSMetricsRegistry metrics) {
+        SMSSender smsSender = createPacedSender(createAsyncSender(
+                metrics != null ? new MeteredSMSSender(transport, metrics) : transport));
+        return Boolean.getBoolean("sms.pipeline")
+                ? new RingBufferSMSSender(smsSender, pipelineCapacity(), pipelineWaitStrategy())
+                : smsSender;
+    }
+
+    private static int pipelineCapacity() {
+        return Integer.getInteger("sms.pipeline.capacity", 4096);
+    }
+
+    private static WaitStrategy pipelineWaitStrategy() {
+        return WaitStrategy.valueOf(System.getProperty("sms.pipeline.wait", "PARK"));
+    }
+
+    private static SMSSender createPacedSender(SMSSender smsSender) {
+        String receiverRate = System.getProperty("sms.rate.receiver");
+        String globalRate = System.getProperty("sms.rate.global");
+        if(receiverRate == null && globalRate == null) {
+            return smsSender;
+        }
+
+        return new ScheduledSMSSender(smsSender,
+                receiverRate != null ? Double.parseDouble(receiverRate) : ScheduledSMSSender.UNLIMITED,
+                globalRate != null ? Double.parseDouble(globalRate) : ScheduledSMSSender.UNLIMITED,
+                Long.getLong("sms.rate.tick", ScheduledSMSSender.DEFAULT_TICK_MILLIS));
+    }
+
+    private static SMSSender createAsyncSender(SMSSender transport) {
+        String asyncWorkers = System.getProperty("sms.async.workers");
+        if(asyncWorkers == null) {
+            return transport;
+        }
+
+        return new AsyncSMSSender(transport,
+                Integer.parseInt(asyncWorkers),
+                Integer.getInteger("sms.async.queue", 10_000),
+                AsyncSMSSender.BackpressurePolicy.valueOf(System.getProperty("sms.async.backpressure", "BLOCK")));
+    }
+
+    private static SMSSender createTransport() {
+        SMSSender transport;
+        if("buffered".equals(System.getProperty("sms.sender"))) {
+            String outputPath = System.getProperty("sms.output");
+            transport = outputPath != null
+                    ? BufferedSMSSender.toFile(Paths.get(outputPath))
+                    : BufferedSMSSender.toStandardOutput();
+        } else {
+            transport = new ConsoleSMSSender();
+        }
 
-        processor.process();
+        Long latencyMillis = Long.getLong("sms.stub.latency");
+        return latencyMillis != null ? new DelayingSMSSender(transport, latencyMillis) : transport;
     }
 }
@@ -0,0 +1,168 @@
+package hu.perlaki.meltwater;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+public class AsyncSMSSender implements SMSSender {
+
+    public enum BackpressurePolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    private static final long POLL_TIMEOUT_MILLIS = 50;
+
+    private final SMSSender transport;
+    private final BackpressurePolicy backpressurePolicy;
+    private final Worker[] workers;
+    private final AtomicInteger pendingSubmissions = new AtomicInteger();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private volatile boolean closed;
+
+    public AsyncSMSSender(SMSSender transport, int workerCount, int queueCapacity, BackpressurePolicy backpressurePolicy) {
+        this.transport = transport;
+        this.backpressurePolicy = backpressurePolicy;
+        this.workers = new Worker[workerCount];
+
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(queueCapacity);
+            Thread thread = new Thread(workers[i], "sms-sender-" + i);
+            thread.setDaemon(true);
+            workers[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    @Override
+    public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        pendingSubmissions.incrementAndGet();
+        try {
+            if(closed) {
+                throw new RuntimeException("The sender is already closed");
+            }
+
+            workerOf(receiverPhoneNumber).submit(new Delivery(senderPhoneNumber, receiverPhoneNumber, message));
+        } finally {
+            pendingSubmissions.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while draining the message queues", e);
+                return;
+            }
+        }
+
+        if(droppedMessages.get() > 0) {
+            log.warn("{} messages were dropped because the delivery queues were full", droppedMessages.get());
+        }
+        transport.close();
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    public int getQueuedMessages() {
+        int queued = 0;
+        for (Worker worker : workers) {
+            queued += worker.queue.size() + worker.overflow.size();
+        }
+        return queued;
+    }
+
+    private Worker workerOf(String receiverPhoneNumber) {
+        return workers[(receiverPhoneNumber.hashCode() & Integer.MAX_VALUE) % workers.length];
+    }
+
+    @AllArgsConstructor
+    private static class Delivery {
+        private final String senderPhoneNumber;
+        private final String receiverPhoneNumber;
+        private final String message;
+    }
+
+    private class Worker implements Runnable {
+        private final BlockingQueue<Delivery> queue;
+        private final Queue<Delivery> overflow = new ConcurrentLinkedQueue<>();
+        private Thread thread;
+
+        Worker(int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        void submit(Delivery delivery) {
+            switch (backpressurePolicy) {
+                case BLOCK:
+                    try {
+                        queue.put(delivery);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for a free slot in the delivery queue", e);
+                    }
+                    break;
+                case DROP:
+                    if(!queue.offer(delivery)) {
+                        droppedMessages.incrementAndGet();
+                    }
+                    break;
+                case SPILL:
+                    if(!overflow.isEmpty() || !queue.offer(delivery)) {
+                        overflow.add(delivery);
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        public void run() {
+            while(true) {
+                Delivery delivery = queue.poll();
+                if(delivery == null) {
+                    delivery = overflow.poll();
+                }
+
+                if(delivery == null) {
+                    if(closed && pendingSubmissions.get() == 0 && queue.isEmpty() && overflow.isEmpty()) {
+                        return;
+                    }
+
+                    try {
+                        delivery = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if(delivery != null) {
+                    deliver(delivery);
+                }
+            }
+        }
+
+        private void deliver(Delivery delivery) {
+            try {
+                transport.send(delivery.senderPhoneNumber, delivery.receiverPhoneNumber, delivery.message);
+            } catch (RuntimeException e) {
+                log.error("Message could not be delivered to {}", delivery.receiverPhoneNumber, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Turns the files of a {@link BinaryAuditJournal} back into text, one line per record: the timestamp, the event and
+ * its strings, e.g. {@code 2024-01-01T10:00:00.123Z REGISTER number1 +36991212321}. A record cut short by a crash is
+ * skipped.
+ */
+@Slf4j
+public class AuditJournalDecoder {
+
+    private byte[] record;
+    private int recordFilled;
+    private long records;
+
+    public static void main(String[] args) {
+        if(args.length != 1) {
+            System.err.println("Usage: AuditJournalDecoder <audit directory>");
+            System.exit(1);
+        }
+
+        new AuditJournalDecoder().decode(Paths.get(args[0]), System.out::println);
+    }
+
+    /**
+     * Returns the number of decoded records.
+     */
+    public long decode(Path directory, Consumer<String> lines) {
+        record = null;
+        records = 0;
+
+        try {
+            int lastIndex = BinaryAuditJournal.lastFileIndex(directory);
+            for (int index = 0; index <= lastIndex; index++) {
+                Path path = directory.resolve(String.format("%s%08d%s",
+                        BinaryAuditJournal.FILE_PREFIX, index, BinaryAuditJournal.FILE_SUFFIX));
+                if(path.toFile().exists()) {
+                    decodeFile(path, lines);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while reading the audit journal in " + directory, e);
+        }
+
+        skipTruncatedRecord();
+        return records;
+    }
+
+    private void decodeFile(Path path, Consumer<String> lines) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(file.remaining() < BinaryAuditJournal.BLOCK_SIZE || file.getInt() != BinaryAuditJournal.MAGIC
+                    || file.getInt() != BinaryAuditJournal.VERSION || file.getInt() != BinaryAuditJournal.BLOCK_SIZE) {
+                throw new RuntimeException(path + " is not an audit journal file");
+            }
+            file.position(BinaryAuditJournal.BLOCK_SIZE);
+
+            while(file.remaining() >= BinaryAuditJournal.BLOCK_SIZE) {
+                if(isEmptyBlock(file)) {
+                    // the end of the written blocks, a record can only continue in the next file if this one is full
+                    skipTruncatedRecord();
+                    return;
+                }
+
+                if(record == null) {
+                    int blocks = file.getShort(file.position() + 2) & 0xffff;
+                    record = new byte[blocks * BinaryAuditJournal.BLOCK_SIZE];
+                    recordFilled = 0;
+                }
+                file.get(record, recordFilled, BinaryAuditJournal.BLOCK_SIZE);
+                recordFilled += BinaryAuditJournal.BLOCK_SIZE;
+
+                if(recordFilled == record.length) {
+                    lines.accept(format(ByteBuffer.wrap(record)));
+                    records++;
+                    record = null;
+                }
+            }
+        }
+    }
+
+    private static boolean isEmptyBlock(ByteBuffer file) {
+        for (int i = file.position(); i < file.position() + BinaryAuditJournal.BLOCK_SIZE; i++) {
+            if(file.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipTruncatedRecord() {
+        if(record != null) {
+            log.warn("Skipping a truncated audit record");
+            record = null;
+        }
+    }
+
+    private static String format(ByteBuffer record) {
+        byte type = record.get();
+        record.position(record.position() + 3);
+        record.getInt();
+        long timestamp = record.getLong();
+
+        StringBuilder line = new StringBuilder(64);
+        line.append(Instant.ofEpochMilli(timestamp)).append(' ').append(typeName(type));
+        int strings = record.getShort() & 0xffff;
+        for (int i = 0; i < strings; i++) {
+            int length = record.getShort() & 0xffff;
+            line.append(' ').append(new String(record.array(), record.position(), length, StandardCharsets.UTF_8));
+            record.position(record.position() + length);
+        }
+        return line.toString();
+    }
+
+    private static String typeName(byte type) {
+        switch (type) {
+            case BinaryAuditJournal.REGISTER:
+                return "REGISTER";
+            case BinaryAuditJournal.SUBSCRIBE:
+                return "SUBSCRIBE";
+            case BinaryAuditJournal.UNSUBSCRIBE:
+                return "UNSUBSCRIBE";
+            case BinaryAuditJournal.CREATE_GROUP:
+                return "CREATE_GROUP";
+            default:
+                return "UNKNOWN(" + type + ")";
+        }
+    }
+}
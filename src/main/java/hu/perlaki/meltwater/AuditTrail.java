@@ -0,0 +1,30 @@
+package hu.perlaki.meltwater;
+
+import java.util.List;
+
+/**
+ * Records the registrations, subscriptions and group definitions received by an SMS center, before they are
+ * validated. By default they are logged, {@link BinaryAuditJournal} records them without formatting.
+ */
+public interface AuditTrail {
+
+    AuditTrail NONE = new AuditTrail() {
+    };
+
+    AuditTrail LOG = new LoggingAuditTrail();
+
+    default void register(String identifier, String phoneNumber) {
+    }
+
+    default void subscribe(String identifier) {
+    }
+
+    default void unsubscribe(String identifier) {
+    }
+
+    default void createGroup(String groupIdentifier, List<String> phonePatterns) {
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,320 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit trail of binary records written to rolling memory-mapped files by a background thread.
+ * <p>
+ * Every record is a run of 64 byte blocks: a 16 byte header (type, number of blocks, payload length, timestamp in
+ * epoch milliseconds) followed by the payload, a count and the length-prefixed UTF-8 bytes of the strings of the
+ * event. The callers copy their records into an in-memory ring of blocks without taking locks: a record's blocks are
+ * claimed with one atomic add and every block is published separately once it is written, so the flusher thread only
+ * copies published blocks, in claim order, to the current file. A caller only waits if the ring is full.
+ * <p>
+ * The files are named {@code audit-<index>.bin}, start with a header block and are preallocated to the file size, the
+ * first all-zero block marks the end of the written blocks. A record may continue in the next file when a file is
+ * full. {@link AuditJournalDecoder} turns the files back into text.
+ */
+@Slf4j
+public class BinaryAuditJournal implements AuditTrail {
+
+    public static final int DEFAULT_FILE_SIZE = 64 << 20;
+    public static final int DEFAULT_RING_BLOCKS = 1 << 16;
+
+    static final int MAGIC = 0x534d5341;
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 16;
+    static final String FILE_PREFIX = "audit-";
+    static final String FILE_SUFFIX = ".bin";
+
+    static final byte REGISTER = 1;
+    static final byte SUBSCRIBE = 2;
+    static final byte UNSUBSCRIBE = 3;
+    static final byte CREATE_GROUP = 4;
+
+    private static final int MAX_FIELD_LENGTH = 0xffff;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path directory;
+    private final int fileSize;
+    private final int ringBlocks;
+    private final byte[] ring;
+    private final AtomicLong claimedBlocks = new AtomicLong();
+    // the sequence + 1 of the block last published into each slot of the ring
+    private final AtomicLongArray publishedBlocks;
+    private volatile long flushedBlocks;
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    private int fileIndex;
+    private FileChannel channel;
+    private MappedByteBuffer file;
+
+    public BinaryAuditJournal(Path directory) {
+        this(directory, DEFAULT_FILE_SIZE, DEFAULT_RING_BLOCKS);
+    }
+
+    public BinaryAuditJournal(Path directory, int fileSize, int ringBlocks) {
+        if(fileSize % BLOCK_SIZE != 0 || fileSize < 2 * BLOCK_SIZE) {
+            throw new RuntimeException("The audit file size has to be a multiple of " + BLOCK_SIZE + " bytes: " + fileSize);
+        }
+        if(Integer.bitCount(ringBlocks) != 1) {
+            throw new RuntimeException("The number of audit ring blocks has to be a power of two: " + ringBlocks);
+        }
+
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.ringBlocks = ringBlocks;
+        this.ring = new byte[ringBlocks * BLOCK_SIZE];
+        this.publishedBlocks = new AtomicLongArray(ringBlocks);
+
+        try {
+            Files.createDirectories(directory);
+            fileIndex = lastFileIndex(directory) + 1;
+            openFile();
+        } catch (IOException e) {
+            throw new RuntimeException("Audit journal could not be opened in " + directory, e);
+        }
+
+        flusher = new Thread(this::flush, "sms-audit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void register(String identifier, String phoneNumber) {
+        byte[] identifierBytes = nonAsciiBytes(identifier);
+        byte[] phoneNumberBytes = nonAsciiBytes(phoneNumber);
+        int payloadLength = Short.BYTES + encodedLength(identifier, identifierBytes)
+                + encodedLength(phoneNumber, phoneNumberBytes);
+
+        long payloadPosition = claim(REGISTER, payloadLength);
+        long position = putShort(payloadPosition, 2);
+        position = putString(position, identifier, identifierBytes);
+        putString(position, phoneNumber, phoneNumberBytes);
+        publish(payloadPosition, payloadLength);
+    }
+
+    @Override
+    public void subscribe(String identifier) {
+        append(SUBSCRIBE, identifier);
+    }
+
+    @Override
+    public void unsubscribe(String identifier) {
+        append(UNSUBSCRIBE, identifier);
+    }
+
+    @Override
+    public void createGroup(String groupIdentifier, List<String> phonePatterns) {
+        if(phonePatterns.size() >= MAX_FIELD_LENGTH) {
+            throw new RuntimeException("Too many patterns for an audit record: " + phonePatterns.size());
+        }
+
+        byte[] identifierBytes = nonAsciiBytes(groupIdentifier);
+        int payloadLength = Short.BYTES + encodedLength(groupIdentifier, identifierBytes);
+        for (String phonePattern : phonePatterns) {
+            payloadLength += encodedLength(phonePattern, nonAsciiBytes(phonePattern));
+        }
+
+        long payloadPosition = claim(CREATE_GROUP, payloadLength);
+        long position = putShort(payloadPosition, 1 + phonePatterns.size());
+        position = putString(position, groupIdentifier, identifierBytes);
+        for (String phonePattern : phonePatterns) {
+            position = putString(position, phonePattern, nonAsciiBytes(phonePattern));
+        }
+        publish(payloadPosition, payloadLength);
+    }
+
+    /**
+     * Waits until every record is written into the files, then closes them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while flushing the audit journal", e);
+            return;
+        }
+
+        try {
+            file.force();
+            channel.close();
+        } catch (IOException e) {
+            log.error("Error while closing the audit journal", e);
+        }
+    }
+
+    private void append(byte type, String identifier) {
+        byte[] identifierBytes = nonAsciiBytes(identifier);
+        int payloadLength = Short.BYTES + encodedLength(identifier, identifierBytes);
+
+        long payloadPosition = claim(type, payloadLength);
+        putString(putShort(payloadPosition, 1), identifier, identifierBytes);
+        publish(payloadPosition, payloadLength);
+    }
+
+    private static int blocksOf(int payloadLength) {
+        return (RECORD_HEADER_SIZE + payloadLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Claims the blocks of a record, writes its header and returns the ring position of the payload.
+     */
+    private long claim(byte type, int payloadLength) {
+        int blocks = blocksOf(payloadLength);
+        if(blocks > ringBlocks) {
+            throw new RuntimeException("Audit record of " + payloadLength + " bytes does not fit into the ring");
+        }
+
+        long firstBlock = claimedBlocks.getAndAdd(blocks);
+        while(firstBlock + blocks - flushedBlocks > ringBlocks) {
+            WaitStrategy.YIELD.idle();
+        }
+
+        long position = firstBlock * BLOCK_SIZE;
+        position = putByte(position, type);
+        position = putByte(position, 0);
+        position = putShort(position, blocks);
+        position = putInt(position, payloadLength);
+        return putLong(position, System.currentTimeMillis());
+    }
+
+    private void publish(long payloadPosition, int payloadLength) {
+        long firstBlock = (payloadPosition - RECORD_HEADER_SIZE) / BLOCK_SIZE;
+        for (long block = firstBlock; block < firstBlock + blocksOf(payloadLength); block++) {
+            publishedBlocks.lazySet((int) (block & (ringBlocks - 1)), block + 1);
+        }
+    }
+
+    private static byte[] nonAsciiBytes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if(value.charAt(i) >= 0x80) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the lengths before the blocks are claimed, a claimed record has to be published.
+     */
+    private static int encodedLength(String value, byte[] bytes) {
+        int length = bytes != null ? bytes.length : value.length();
+        if(length > MAX_FIELD_LENGTH) {
+            throw new RuntimeException("Audit record field is too long: " + length);
+        }
+        return Short.BYTES + length;
+    }
+
+    private long putString(long position, String value, byte[] bytes) {
+        if(bytes != null) {
+            position = putShort(position, bytes.length);
+            for (byte b : bytes) {
+                position = putByte(position, b);
+            }
+            return position;
+        }
+
+        position = putShort(position, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            position = putByte(position, value.charAt(i));
+        }
+        return position;
+    }
+
+    private long putByte(long position, int value) {
+        ring[(int) (position & (ring.length - 1))] = (byte) value;
+        return position + 1;
+    }
+
+    private long putShort(long position, int value) {
+        position = putByte(position, value >>> 8);
+        return putByte(position, value);
+    }
+
+    private long putInt(long position, int value) {
+        position = putShort(position, value >>> 16);
+        return putShort(position, value & 0xffff);
+    }
+
+    private long putLong(long position, long value) {
+        position = putInt(position, (int) (value >>> 32));
+        return putInt(position, (int) value);
+    }
+
+    private void flush() {
+        while(true) {
+            if(flushPublishedBlocks() == 0) {
+                if(closed && claimedBlocks.get() == flushedBlocks) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    private int flushPublishedBlocks() {
+        long block = flushedBlocks;
+        int flushed = 0;
+        try {
+            while(publishedBlocks.get((int) (block & (ringBlocks - 1))) == block + 1) {
+                if(!file.hasRemaining()) {
+                    file.force();
+                    channel.close();
+                    fileIndex++;
+                    openFile();
+                }
+                file.put(ring, (int) (block & (ringBlocks - 1)) * BLOCK_SIZE, BLOCK_SIZE);
+                block++;
+                flushed++;
+            }
+        } catch (IOException e) {
+            // the records are lost, but the callers must not be blocked by a full ring
+            log.error("Error while writing the audit journal", e);
+            block = claimedBlocks.get();
+        }
+        flushedBlocks = block;
+        return flushed;
+    }
+
+    private void openFile() throws IOException {
+        channel = FileChannel.open(directory.resolve(String.format("%s%08d%s", FILE_PREFIX, fileIndex, FILE_SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        file = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        file.putInt(MAGIC);
+        file.putInt(VERSION);
+        file.putInt(BLOCK_SIZE);
+        file.position(BLOCK_SIZE);
+    }
+
+    static int lastFileIndex(Path directory) throws IOException {
+        int lastIndex = -1;
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                lastIndex = Math.max(lastIndex,
+                        Integer.parseInt(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+            }
+        }
+        return lastIndex;
+    }
+}
@@ -0,0 +1,203 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a text input file into the {@link BinaryCommandFormat}. Lines that are not commands are left out, a
+ * command that cannot be compiled, e.g. a registration with an invalid phone number, fails the conversion.
+ */
+@Slf4j
+public class BinaryCommandConverter {
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final CommandParser commandParser = new CommandParser();
+    private final Command command = new Command();
+    private final Map<String, Integer> identifierIndexes = new HashMap<>();
+    private int[] targetIndexes = new int[16];
+    private ByteBuffer record = ByteBuffer.allocate(1024);
+    private ByteBuffer output = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+    private FileChannel channel;
+    private long lineNumber;
+    private long commands;
+
+    public static void main(String[] args) {
+        if(args.length != 2) {
+            System.err.println("Usage: BinaryCommandConverter <text input> <binary output>");
+            System.exit(1);
+        }
+
+        long commands = new BinaryCommandConverter().convert(Paths.get(args[0]), Paths.get(args[1]));
+        log.info("Converted {} commands", commands);
+    }
+
+    /**
+     * Returns the number of commands written.
+     */
+    public long convert(Path textPath, Path binaryPath) {
+        identifierIndexes.clear();
+        record.clear();
+        lineNumber = 0;
+        commands = 0;
+
+        try(FileChannel input = FileChannel.open(textPath, StandardOpenOption.READ);
+            FileChannel output = FileChannel.open(binaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.channel = output;
+            this.output.clear();
+            this.output.putInt(BinaryCommandFormat.MAGIC);
+            this.output.put(BinaryCommandFormat.VERSION);
+
+            new LineReader().read(input, this::convertLine);
+            flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Error while converting " + textPath, e);
+        } finally {
+            channel = null;
+        }
+
+        return commands;
+    }
+
+    private void convertLine(byte[] buffer, int from, int to) {
+        lineNumber++;
+
+        try {
+            if(commandParser.parse(buffer, from, to, command)) {
+                writeCommand(command);
+                commands++;
+            }
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Line " + lineNumber + " could not be converted: " + e.getMessage(), e);
+        }
+    }
+
+    private void writeCommand(Command command) {
+        switch (command.getType()) {
+            case REGISTER: {
+                int identifierIndex = identifierIndex(command.getIdentifier());
+                long phoneNumber = PhoneNumberCodec.encode(command.getPhoneNumber());
+                record.put(BinaryCommandFormat.REGISTER);
+                BinaryCommandFormat.putVarint(record, identifierIndex);
+                record.putLong(phoneNumber);
+                break;
+            }
+            case SUBSCRIBE:
+            case UNSUBSCRIBE: {
+                int identifierIndex = identifierIndex(command.getIdentifier());
+                record.put(command.getType() == Command.Type.SUBSCRIBE
+                        ? BinaryCommandFormat.SUBSCRIBE
+                        : BinaryCommandFormat.UNSUBSCRIBE);
+                BinaryCommandFormat.putVarint(record, identifierIndex);
+                break;
+            }
+            case GROUP: {
+                int identifierIndex = identifierIndex(command.getIdentifier());
+                List<String> phonePatterns = command.getTargets();
+                record.put(BinaryCommandFormat.GROUP);
+                BinaryCommandFormat.putVarint(record, identifierIndex);
+                BinaryCommandFormat.putVarint(record, phonePatterns.size());
+                for (String phonePattern : phonePatterns) {
+                    putString(phonePattern);
+                }
+                break;
+            }
+            case MESSAGE: {
+                int senderIndex = identifierIndex(command.getIdentifier());
+                List<String> targets = command.getTargets();
+                if(targetIndexes.length < targets.size()) {
+                    targetIndexes = new int[targets.size()];
+                }
+                for (int i = 0; i < targets.size(); i++) {
+                    targetIndexes[i] = identifierIndex(targets.get(i));
+                }
+
+                record.put(BinaryCommandFormat.MESSAGE);
+                BinaryCommandFormat.putVarint(record, senderIndex);
+                BinaryCommandFormat.putVarint(record, targets.size());
+                for (int i = 0; i < targets.size(); i++) {
+                    ensureRecord(BinaryCommandFormat.MAX_VARINT_LENGTH);
+                    BinaryCommandFormat.putVarint(record, targetIndexes[i]);
+                }
+                putString(command.getMessage());
+                break;
+            }
+        }
+
+        writeRecord();
+    }
+
+    private int identifierIndex(String identifier) {
+        if(identifier == null) {
+            throw new RuntimeException("Identifier is missing");
+        }
+
+        Integer index = identifierIndexes.get(identifier);
+        if(index != null) {
+            return index;
+        }
+
+        index = identifierIndexes.size();
+        identifierIndexes.put(identifier, index);
+
+        record.put(BinaryCommandFormat.DEFINE_IDENTIFIER);
+        putString(identifier);
+        writeRecord();
+        return index;
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureRecord(BinaryCommandFormat.MAX_VARINT_LENGTH + bytes.length);
+        BinaryCommandFormat.putVarint(record, bytes.length);
+        record.put(bytes);
+    }
+
+    private void ensureRecord(int length) {
+        if(record.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + length));
+            record.flip();
+            grown.put(record);
+            record = grown;
+        }
+    }
+
+    private void writeRecord() {
+        record.flip();
+        int length = record.remaining();
+
+        if(output.remaining() < BinaryCommandFormat.MAX_VARINT_LENGTH + length) {
+            flush();
+            if(output.capacity() < BinaryCommandFormat.MAX_VARINT_LENGTH + length) {
+                output = ByteBuffer.allocate(BinaryCommandFormat.MAX_VARINT_LENGTH + length);
+            }
+        }
+
+        BinaryCommandFormat.putVarint(output, length);
+        output.put(record);
+        record.clear();
+    }
+
+    private void flush() {
+        output.flip();
+        try {
+            while(output.hasRemaining()) {
+                channel.write(output);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Commands could not be written", e);
+        }
+        output.clear();
+    }
+}
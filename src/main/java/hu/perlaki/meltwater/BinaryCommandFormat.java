@@ -0,0 +1,73 @@
+package hu.perlaki.meltwater;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compiled form of the input commands. After a header of {@link #MAGIC} and {@link #VERSION} the file is a sequence
+ * of records, each a varint length followed by an opcode byte and the payload. Identifiers, group names and
+ * {@code broadcast} are defined once by a {@link #DEFINE_IDENTIFIER} record and referred to by their varint index in
+ * the order of definition. Phone numbers are stored in their {@link PhoneNumberCodec} form, strings as a varint
+ * length and UTF-8 bytes.
+ */
+public final class BinaryCommandFormat {
+
+    public static final int MAGIC = 0x534d5342;
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + 1;
+
+    /** identifier string */
+    static final byte DEFINE_IDENTIFIER = 0;
+    /** identifier index, encoded phone number as a long */
+    static final byte REGISTER = 1;
+    /** identifier index */
+    static final byte SUBSCRIBE = 2;
+    /** identifier index */
+    static final byte UNSUBSCRIBE = 3;
+    /** group identifier index, pattern count, pattern strings */
+    static final byte GROUP = 4;
+    /** sender identifier index, target count, target identifier indexes, message string */
+    static final byte MESSAGE = 5;
+
+    static final int MAX_VARINT_LENGTH = 5;
+
+    private BinaryCommandFormat() {
+    }
+
+    public static boolean isBinary(Path path) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            while(header.hasRemaining()) {
+                if(channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            return header.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void putVarint(ByteBuffer target, int value) {
+        while((value & ~0x7F) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer source) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = source.get();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+        throw new RuntimeException("Malformed varint");
+    }
+}
@@ -0,0 +1,247 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a file compiled by {@link BinaryCommandConverter} from a memory-mapped window, calling the SMS center with
+ * the identifier strings defined once in the file. Message receivers are resolved to handles when the center is a
+ * {@link HandleSMSService}. Errors of the center stop the replay, the same way they stop the processing of a text
+ * input.
+ */
+@Slf4j
+public class BinaryCommandReplayer {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final int MESSAGE_CACHE_SIZE = 1 << 10;
+    private static final int MAX_CACHED_MESSAGE_LENGTH = 256;
+
+    private final SMSService smsCenter;
+    private final SMSMetrics metrics;
+    private final HandleSMSService handleSMSService;
+    private final Command command = new Command();
+    private final List<String> targets = new ArrayList<>();
+    private String[] identifiers = new String[1024];
+    private boolean[] numberIdentifiers = new boolean[1024];
+    private int identifierCount;
+    private byte[] stringBytes = new byte[256];
+    private final byte[][] cachedMessageBytes = new byte[MESSAGE_CACHE_SIZE][];
+    private final String[] cachedMessages = new String[MESSAGE_CACHE_SIZE];
+
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    public BinaryCommandReplayer(SMSService smsCenter, SMSMetrics metrics) {
+        this.smsCenter = smsCenter;
+        this.metrics = metrics;
+        this.handleSMSService = smsCenter instanceof HandleSMSService ? (HandleSMSService) smsCenter : null;
+    }
+
+    /**
+     * Returns the number of replayed commands.
+     */
+    public long replay(Path binaryPath) {
+        long startTime = System.nanoTime();
+        long commands = 0;
+        identifierCount = 0;
+        Arrays.fill(cachedMessageBytes, null);
+        Arrays.fill(cachedMessages, null);
+
+        try(FileChannel channel = FileChannel.open(binaryPath, StandardOpenOption.READ)) {
+            this.channel = channel;
+            map(0);
+
+            if(window.remaining() < BinaryCommandFormat.HEADER_SIZE || window.getInt() != BinaryCommandFormat.MAGIC) {
+                throw new RuntimeException(binaryPath + " is not a binary command file");
+            }
+            byte version = window.get();
+            if(version != BinaryCommandFormat.VERSION) {
+                throw new RuntimeException("Unsupported binary command file version: " + version);
+            }
+
+            while(ensure(1)) {
+                ensure(BinaryCommandFormat.MAX_VARINT_LENGTH);
+                int length = BinaryCommandFormat.getVarint(window);
+                if(!ensure(length) || window.remaining() < length) {
+                    throw new RuntimeException(binaryPath + " ends with a truncated record");
+                }
+
+                int recordEnd = window.position() + length;
+                if(replayRecord(window.get())) {
+                    commands++;
+                }
+                window.position(recordEnd);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while replaying " + binaryPath, e);
+        } finally {
+            this.channel = null;
+            this.window = null;
+        }
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+        log.info("Replayed {} commands in {} ms ({} commands/s)",
+                commands, elapsedNanos / 1_000_000, commands * 1_000_000_000L / elapsedNanos);
+        return commands;
+    }
+
+    private boolean replayRecord(byte opcode) {
+        switch (opcode) {
+            case BinaryCommandFormat.DEFINE_IDENTIFIER:
+                defineIdentifier(getString());
+                return false;
+            case BinaryCommandFormat.REGISTER: {
+                String identifier = identifier();
+                String phoneNumber = PhoneNumberCodec.decode(window.getLong());
+                metrics.commandProcessed(Command.Type.REGISTER);
+                smsCenter.register(identifier, phoneNumber);
+                return true;
+            }
+            case BinaryCommandFormat.SUBSCRIBE:
+                metrics.commandProcessed(Command.Type.SUBSCRIBE);
+                smsCenter.subscribe(identifier());
+                return true;
+            case BinaryCommandFormat.UNSUBSCRIBE:
+                metrics.commandProcessed(Command.Type.UNSUBSCRIBE);
+                smsCenter.unsubscribe(identifier());
+                return true;
+            case BinaryCommandFormat.GROUP: {
+                String groupIdentifier = identifier();
+                int patternCount = BinaryCommandFormat.getVarint(window);
+                List<String> phonePatterns = new ArrayList<>(patternCount);
+                for (int i = 0; i < patternCount; i++) {
+                    phonePatterns.add(getString());
+                }
+                metrics.commandProcessed(Command.Type.GROUP);
+                smsCenter.createGroup(groupIdentifier, phonePatterns);
+                return true;
+            }
+            case BinaryCommandFormat.MESSAGE:
+                metrics.commandProcessed(Command.Type.MESSAGE);
+                replayMessage();
+                return true;
+            default:
+                log.warn("Skipping record with unknown opcode {}", opcode);
+                return false;
+        }
+    }
+
+    private void replayMessage() {
+        int senderIndex = BinaryCommandFormat.getVarint(window);
+        int targetCount = BinaryCommandFormat.getVarint(window);
+
+        if(handleSMSService == null) {
+            targets.clear();
+            for (int i = 0; i < targetCount; i++) {
+                targets.add(identifier());
+            }
+            smsCenter.sendToTargets(identifiers[senderIndex], targets, getMessage());
+            return;
+        }
+
+        IdentifierRegistry identifierRegistry = handleSMSService.getIdentifierRegistry();
+        command.clear();
+        command.setType(Command.Type.MESSAGE);
+        command.setIdentifier(identifiers[senderIndex]);
+        command.setIdentifierHandle(identifierRegistry.handleOf(identifiers[senderIndex]));
+        for (int i = 0; i < targetCount; i++) {
+            int targetIndex = BinaryCommandFormat.getVarint(window);
+            if(numberIdentifiers[targetIndex]) {
+                command.addTargetHandle(identifierRegistry.handleOf(identifiers[targetIndex]));
+            } else {
+                command.getTargets().add(identifiers[targetIndex]);
+            }
+        }
+        command.setMessage(getMessage());
+        handleSMSService.sendToTargets(command);
+    }
+
+    private void defineIdentifier(String identifier) {
+        if(identifierCount == identifiers.length) {
+            identifiers = Arrays.copyOf(identifiers, identifierCount * 2);
+            numberIdentifiers = Arrays.copyOf(numberIdentifiers, identifierCount * 2);
+        }
+        numberIdentifiers[identifierCount] = identifier.startsWith("number");
+        identifiers[identifierCount++] = identifier;
+    }
+
+    private String identifier() {
+        return identifiers[BinaryCommandFormat.getVarint(window)];
+    }
+
+    /**
+     * Replayed histories tend to repeat the same texts, so short messages are looked up in a direct-mapped cache by
+     * their bytes before they are decoded into a new string.
+     */
+    private String getMessage() {
+        int length = BinaryCommandFormat.getVarint(window);
+        if(length > MAX_CACHED_MESSAGE_LENGTH) {
+            return getString(length);
+        }
+
+        int start = window.position();
+        int hash = length;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + window.get(i);
+        }
+        int slot = (hash ^ hash >>> 16) & (MESSAGE_CACHE_SIZE - 1);
+
+        byte[] cachedBytes = cachedMessageBytes[slot];
+        if(cachedBytes != null && cachedBytes.length == length && matches(cachedBytes, start)) {
+            window.position(start + length);
+            return cachedMessages[slot];
+        }
+
+        String message = getString(length);
+        cachedMessageBytes[slot] = Arrays.copyOf(stringBytes, length);
+        cachedMessages[slot] = message;
+        return message;
+    }
+
+    private boolean matches(byte[] bytes, int start) {
+        for (int i = 0; i < bytes.length; i++) {
+            if(bytes[i] != window.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getString() {
+        return getString(BinaryCommandFormat.getVarint(window));
+    }
+
+    private String getString(int length) {
+        if(stringBytes.length < length) {
+            stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+        }
+        window.get(stringBytes, 0, length);
+        return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes sure that the next {@code length} bytes are in the mapped window if the file has that many, returns
+     * false at the end of the file.
+     */
+    private boolean ensure(int length) throws IOException {
+        if(window.remaining() < length && windowStart + window.limit() < channel.size()) {
+            map(windowStart + window.position());
+        }
+        return window.hasRemaining();
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, channel.size() - position));
+    }
+}
@@ -0,0 +1,337 @@
+package hu.perlaki.meltwater;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+public class BoundedHeldMessageStore implements HeldMessageStore {
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int SWEEP_INTERVAL = 4096;
+    private static final int CHUNK_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final long NO_CHUNK = -1;
+
+    private final int maxMessagesPerReceiver;
+    private final long maxMessages;
+    private final long ttlMillis;
+    private final long maxHeapMessages;
+    private final SpillSegment spillSegment;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<String, ReceiverQueue> queues = new LinkedHashMap<>(16, 0.75f, true);
+    private long heldMessages;
+    private long heapMessages;
+    private long evictedMessages;
+    private long expiredMessages;
+    private int holdsSinceSweep;
+
+    public BoundedHeldMessageStore() {
+        this(UNLIMITED, UNLIMITED, 0, UNLIMITED, null);
+    }
+
+    public BoundedHeldMessageStore(int maxMessagesPerReceiver, long maxMessages, long ttlMillis,
+                                   long maxHeapMessages, SpillSegment spillSegment) {
+        this(maxMessagesPerReceiver, maxMessages, ttlMillis, maxHeapMessages, spillSegment, System::currentTimeMillis);
+    }
+
+    BoundedHeldMessageStore(int maxMessagesPerReceiver, long maxMessages, long ttlMillis,
+                            long maxHeapMessages, SpillSegment spillSegment, LongSupplier clock) {
+        this.maxMessagesPerReceiver = maxMessagesPerReceiver;
+        this.maxMessages = maxMessages;
+        this.ttlMillis = ttlMillis;
+        this.maxHeapMessages = maxHeapMessages;
+        this.spillSegment = spillSegment;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void hold(String receiverPhoneNumber, HeldMessage heldMessage) {
+        long now = clock.getAsLong();
+        sweepIfNeeded(now);
+
+        ReceiverQueue queue = queues.computeIfAbsent(receiverPhoneNumber, pn -> new ReceiverQueue());
+        expire(queue, now);
+
+        if(queue.depth() >= maxMessagesPerReceiver) {
+            evictOldest(queue);
+            evictedMessages++;
+        }
+
+        queue.heap.addLast(new Entry(heldMessage, now));
+        heldMessages++;
+        heapMessages++;
+
+        enforceGlobalLimit(queue);
+        enforceHeapLimit();
+    }
+
+    @Override
+    public synchronized List<HeldMessage> drain(String receiverPhoneNumber) {
+        ReceiverQueue queue = queues.remove(receiverPhoneNumber);
+
+        if(queue == null) {
+            return Collections.emptyList();
+        }
+
+        List<HeldMessage> messages = read(queue, clock.getAsLong());
+
+        heldMessages -= queue.depth();
+        heapMessages -= queue.heap.size();
+        expiredMessages += queue.depth() - messages.size();
+        resetSpillSegmentIfUnused();
+
+        return messages;
+    }
+
+    @Override
+    public synchronized List<HeldMessage> peek(String receiverPhoneNumber) {
+        ReceiverQueue queue = queues.get(receiverPhoneNumber);
+
+        return queue == null ? Collections.emptyList() : read(queue, clock.getAsLong());
+    }
+
+    @Override
+    public synchronized int depth(String receiverPhoneNumber) {
+        ReceiverQueue queue = queues.get(receiverPhoneNumber);
+
+        if(queue == null) {
+            return 0;
+        }
+
+        expire(queue, clock.getAsLong());
+        return queue.depth();
+    }
+
+    @Override
+    public synchronized HeldMessageStatistics statistics() {
+        int maxQueueDepth = 0;
+        for (ReceiverQueue queue : queues.values()) {
+            maxQueueDepth = Math.max(maxQueueDepth, queue.depth());
+        }
+
+        return new HeldMessageStatistics(queues.size(), heldMessages, heapMessages, heldMessages - heapMessages,
+                maxQueueDepth, evictedMessages, expiredMessages);
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<String, HeldMessage> action) {
+        long now = clock.getAsLong();
+
+        for (Map.Entry<String, ReceiverQueue> queue : queues.entrySet()) {
+            for (HeldMessage heldMessage : read(queue.getValue(), now)) {
+                action.accept(queue.getKey(), heldMessage);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if(spillSegment != null) {
+            spillSegment.close();
+        }
+    }
+
+    private void enforceGlobalLimit(ReceiverQueue current) {
+        Iterator<ReceiverQueue> coldestFirst = queues.values().iterator();
+
+        while(heldMessages > maxMessages && coldestFirst.hasNext()) {
+            ReceiverQueue queue = coldestFirst.next();
+            if(queue == current && coldestFirst.hasNext()) {
+                continue;
+            }
+
+            evictOldest(queue);
+            evictedMessages++;
+            if(queue.depth() == 0) {
+                coldestFirst.remove();
+            }
+        }
+    }
+
+    private void enforceHeapLimit() {
+        if(spillSegment == null) {
+            return;
+        }
+
+        Iterator<ReceiverQueue> coldestFirst = queues.values().iterator();
+        while(heapMessages > maxHeapMessages && coldestFirst.hasNext()) {
+            ReceiverQueue queue = coldestFirst.next();
+            if(!queue.heap.isEmpty()) {
+                spill(queue);
+            }
+        }
+    }
+
+    private void evictOldest(ReceiverQueue queue) {
+        if(queue.spilledDepth() > 0) {
+            queue.skippedSpilledMessages++;
+        } else {
+            queue.heap.pollFirst();
+            heapMessages--;
+        }
+        heldMessages--;
+    }
+
+    private void sweepIfNeeded(long now) {
+        if(ttlMillis <= 0 || ++holdsSinceSweep < SWEEP_INTERVAL) {
+            return;
+        }
+
+        holdsSinceSweep = 0;
+        Iterator<ReceiverQueue> iterator = queues.values().iterator();
+        while(iterator.hasNext()) {
+            ReceiverQueue queue = iterator.next();
+            expire(queue, now);
+            if(queue.depth() == 0) {
+                iterator.remove();
+            }
+        }
+        resetSpillSegmentIfUnused();
+    }
+
+    private void expire(ReceiverQueue queue, long now) {
+        if(ttlMillis <= 0) {
+            return;
+        }
+
+        if(queue.spilledDepth() > 0 && isExpired(queue.newestSpilledAt, now)) {
+            int expired = queue.spilledDepth();
+            queue.skippedSpilledMessages += expired;
+            heldMessages -= expired;
+            expiredMessages += expired;
+        }
+
+        while(!queue.heap.isEmpty() && isExpired(queue.heap.peekFirst().heldAt, now)) {
+            queue.heap.pollFirst();
+            heldMessages--;
+            heapMessages--;
+            expiredMessages++;
+        }
+    }
+
+    private boolean isExpired(long heldAt, long now) {
+        return ttlMillis > 0 && heldAt + ttlMillis <= now;
+    }
+
+    private void spill(ReceiverQueue queue) {
+        int size = CHUNK_HEADER_SIZE;
+        List<byte[]> encoded = new ArrayList<>(queue.heap.size() * 2);
+        for (Entry entry : queue.heap) {
+            byte[] sender = entry.heldMessage.getSenderPhoneNumber().getBytes(StandardCharsets.UTF_8);
+            byte[] message = entry.heldMessage.getMessage().getBytes(StandardCharsets.UTF_8);
+            encoded.add(sender);
+            encoded.add(message);
+            size += Long.BYTES + Integer.BYTES * 2 + sender.length + message.length;
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocate(size);
+        chunk.putLong(queue.lastChunkOffset);
+        chunk.putInt(queue.heap.size());
+        int index = 0;
+        for (Entry entry : queue.heap) {
+            chunk.putLong(entry.heldAt);
+            putBytes(chunk, encoded.get(index++));
+            putBytes(chunk, encoded.get(index++));
+        }
+        chunk.flip();
+
+        queue.lastChunkOffset = spillSegment.append(chunk);
+        queue.spilledMessages += queue.heap.size();
+        queue.newestSpilledAt = queue.heap.peekLast().heldAt;
+        heapMessages -= queue.heap.size();
+        queue.heap.clear();
+    }
+
+    private List<HeldMessage> read(ReceiverQueue queue, long now) {
+        List<HeldMessage> messages = new ArrayList<>(queue.depth());
+
+        if(queue.spilledDepth() > 0) {
+            Deque<Long> chunkOffsets = new ArrayDeque<>();
+            for (long offset = queue.lastChunkOffset; offset != NO_CHUNK; offset = spillSegment.read(offset).getLong()) {
+                chunkOffsets.push(offset);
+            }
+
+            int toSkip = queue.skippedSpilledMessages;
+            for (long offset : chunkOffsets) {
+                ByteBuffer chunk = spillSegment.read(offset);
+                chunk.getLong();
+                int count = chunk.getInt();
+                for (int i = 0; i < count; i++) {
+                    long heldAt = chunk.getLong();
+                    String sender = getString(chunk);
+                    String message = getString(chunk);
+                    if(toSkip > 0) {
+                        toSkip--;
+                    } else if(!isExpired(heldAt, now)) {
+                        messages.add(new HeldMessage(sender, message));
+                    }
+                }
+            }
+        }
+
+        for (Entry entry : queue.heap) {
+            if(!isExpired(entry.heldAt, now)) {
+                messages.add(entry.heldMessage);
+            }
+        }
+        return messages;
+    }
+
+    private void resetSpillSegmentIfUnused() {
+        if(spillSegment != null && heldMessages == heapMessages && spillSegment.size() > 0) {
+            for (ReceiverQueue queue : queues.values()) {
+                queue.lastChunkOffset = NO_CHUNK;
+                queue.spilledMessages = 0;
+                queue.skippedSpilledMessages = 0;
+            }
+            spillSegment.reset();
+        }
+    }
+
+    private static void putBytes(ByteBuffer target, byte[] bytes) {
+        target.putInt(bytes.length);
+        target.put(bytes);
+    }
+
+    private static String getString(ByteBuffer source) {
+        byte[] bytes = new byte[source.getInt()];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+        private final HeldMessage heldMessage;
+        private final long heldAt;
+
+        Entry(HeldMessage heldMessage, long heldAt) {
+            this.heldMessage = heldMessage;
+            this.heldAt = heldAt;
+        }
+    }
+
+    private static class ReceiverQueue {
+        private final Deque<Entry> heap = new ArrayDeque<>(2);
+        private long lastChunkOffset = NO_CHUNK;
+        private int spilledMessages;
+        private int skippedSpilledMessages;
+        private long newestSpilledAt;
+
+        int spilledDepth() {
+            return spilledMessages - skippedSpilledMessages;
+        }
+
+        int depth() {
+            return spilledDepth() + heap.size();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class BufferedSMSSender implements FanOutSMSSender {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+    private static final int MAX_BYTES_PER_CHAR = 3;
+    private static final int SEPARATOR_BYTES = 4;
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final ByteBuffer buffer;
+    private final ScheduledExecutorService flusher;
+
+    public BufferedSMSSender(WritableByteChannel channel, boolean closeChannel, int bufferSize, long flushIntervalMillis) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+
+        if(flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sms-sender-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public static BufferedSMSSender toStandardOutput() {
+        WritableByteChannel channel = new FileOutputStream(FileDescriptor.out).getChannel();
+        return new BufferedSMSSender(channel, false, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public static BufferedSMSSender toFile(Path outputPath) {
+        try {
+            FileChannel channel = FileChannel.open(outputPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new BufferedSMSSender(channel, true, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+        } catch (IOException e) {
+            throw new RuntimeException("Output file could not be opened", e);
+        }
+    }
+
+    @Override
+    public synchronized void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        int maxLength = (senderPhoneNumber.length() + receiverPhoneNumber.length() + message.length())
+                * MAX_BYTES_PER_CHAR + SEPARATOR_BYTES;
+
+        if(buffer.remaining() < maxLength) {
+            flush();
+        }
+
+        if(buffer.remaining() < maxLength) {
+            ByteBuffer oversized = ByteBuffer.allocate(maxLength);
+            encode(oversized, senderPhoneNumber, receiverPhoneNumber, message);
+            oversized.flip();
+            write(oversized);
+        } else {
+            encode(buffer, senderPhoneNumber, receiverPhoneNumber, message);
+        }
+    }
+
+    @Override
+    public synchronized void send(EncodedMessage message, long receiverPhoneNumber) {
+        int maxLength = message.encodedLength();
+
+        if(buffer.remaining() < maxLength) {
+            flush();
+        }
+
+        if(buffer.remaining() < maxLength) {
+            send(message.getSenderPhoneNumber(), PhoneNumberCodec.decode(receiverPhoneNumber), message.getMessage());
+        } else {
+            message.encode(buffer, receiverPhoneNumber);
+        }
+    }
+
+    public synchronized void flush() {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        if(flusher != null) {
+            flusher.shutdownNow();
+        }
+
+        synchronized (this) {
+            flush();
+            if(closeChannel) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.error("Error while closing the output", e);
+                }
+            }
+        }
+    }
+
+    private void write(ByteBuffer bytes) {
+        try {
+            while(bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Messages could not be written to the output", e);
+        }
+    }
+
+    private static void encode(ByteBuffer target, String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        putString(target, senderPhoneNumber);
+        target.put((byte) ' ');
+        putString(target, receiverPhoneNumber);
+        target.put((byte) ' ');
+        target.put((byte) '"');
+        putString(target, message);
+        target.put((byte) '"');
+        target.put((byte) '\n');
+    }
+
+    static void putString(ByteBuffer target, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if(c < 0x80) {
+                target.put((byte) c);
+            } else if(c < 0x800) {
+                target.put((byte) (0xC0 | (c >> 6)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            } else if(Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                target.put((byte) (0xF0 | (codePoint >> 18)));
+                target.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                target.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if(Character.isSurrogate(c)) {
+                target.put((byte) '?');
+            } else {
+                target.put((byte) (0xE0 | (c >> 12)));
+                target.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
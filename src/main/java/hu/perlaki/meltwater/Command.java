@@ -0,0 +1,47 @@
+package hu.perlaki.meltwater;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+public class Command {
+
+    public enum Type {
+        REGISTER, SUBSCRIBE, UNSUBSCRIBE, GROUP, MESSAGE
+    }
+
+    private Type type;
+    private String identifier;
+    private String phoneNumber;
+    private final List<String> targets = new ArrayList<>();
+    private String message;
+    private int identifierHandle = IdentifierRegistry.NO_HANDLE;
+    private int[] targetHandles = new int[4];
+
+    /**
+     * Adds a target already resolved to a registry handle, its place in {@link #getTargets()} is kept by a null.
+     */
+    public void addTargetHandle(int handle) {
+        if(targets.size() == targetHandles.length) {
+            targetHandles = Arrays.copyOf(targetHandles, targetHandles.length * 2);
+        }
+        targetHandles[targets.size()] = handle;
+        targets.add(null);
+    }
+
+    public int getTargetHandle(int index) {
+        return targetHandles[index];
+    }
+
+    public void clear() {
+        type = null;
+        identifier = null;
+        phoneNumber = null;
+        targets.clear();
+        message = null;
+        identifierHandle = IdentifierRegistry.NO_HANDLE;
+    }
+}
@@ -0,0 +1,171 @@
+package hu.perlaki.meltwater;
+
+import java.nio.charset.StandardCharsets;
+
+public class CommandParser {
+
+    private static final byte[] NUMBER = ascii("number");
+    private static final byte[] SUBSCRIBE = ascii("subscribe");
+    private static final byte[] UNSUBSCRIBE = ascii("unsubscribe");
+    private static final byte[] GROUP = ascii("group");
+    private static final byte[] MESSAGE = ascii("message");
+
+    private final IdentifierRegistry identifierRegistry;
+
+    public CommandParser() {
+        this(null);
+    }
+
+    /**
+     * With a registry the sender and the number receivers of a message are resolved to handles instead of strings,
+     * the sender identifier is only materialized when a group or broadcast receiver needs it.
+     */
+    public CommandParser(IdentifierRegistry identifierRegistry) {
+        this.identifierRegistry = identifierRegistry;
+    }
+
+    public boolean parse(byte[] line, int from, int to, Command command) {
+        command.clear();
+
+        to = trimEnd(line, from, to);
+        from = skipSpaces(line, from, to);
+        if(from == to) {
+            return false;
+        }
+
+        int tokenEnd = tokenEnd(line, from, to);
+
+        if(startsWith(line, from, to, NUMBER)) {
+            command.setType(Command.Type.REGISTER);
+            command.setIdentifier(string(line, from, tokenEnd));
+            command.setPhoneNumber(nextToken(line, tokenEnd, to));
+            if(command.getPhoneNumber() == null) {
+                throw new RuntimeException("Phone number is missing");
+            }
+        } else if(startsWith(line, from, to, SUBSCRIBE)) {
+            command.setType(Command.Type.SUBSCRIBE);
+            command.setIdentifier(nextToken(line, tokenEnd, to));
+        } else if(startsWith(line, from, to, UNSUBSCRIBE)) {
+            command.setType(Command.Type.UNSUBSCRIBE);
+            command.setIdentifier(nextToken(line, tokenEnd, to));
+        } else if(startsWith(line, from, to, GROUP)) {
+            command.setType(Command.Type.GROUP);
+            command.setIdentifier(string(line, from, tokenEnd));
+            parseGroupPatterns(line, tokenEnd, to, command);
+        } else if(startsWith(line, from, to, MESSAGE)) {
+            command.setType(Command.Type.MESSAGE);
+            parseMessage(line, tokenEnd, to, command);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    private void parseGroupPatterns(byte[] line, int from, int to, Command command) {
+        int patternStart = skipSpaces(line, from, to);
+
+        while(patternStart < to) {
+            int patternEnd = tokenEnd(line, patternStart, to);
+            command.getTargets().add(string(line, patternStart, patternEnd));
+            patternStart = skipSpaces(line, patternEnd, to);
+        }
+    }
+
+    private void parseMessage(byte[] line, int from, int to, Command command) {
+        int senderStart = skipSpaces(line, from, to);
+        int senderEnd = tokenEnd(line, senderStart, to);
+
+        int receiversStart = skipSpaces(line, senderEnd, to);
+        int receiversEnd = tokenEnd(line, receiversStart, to);
+        int receiverStart = receiversStart;
+        boolean senderIdentifierNeeded = identifierRegistry == null;
+        for (int i = receiversStart; i <= receiversEnd; i++) {
+            if(i == receiversEnd || line[i] == ',') {
+                if(i > receiverStart) {
+                    if(identifierRegistry != null && startsWith(line, receiverStart, i, NUMBER)) {
+                        command.addTargetHandle(identifierRegistry.handleOf(line, receiverStart, i));
+                    } else {
+                        command.getTargets().add(string(line, receiverStart, i));
+                        senderIdentifierNeeded = true;
+                    }
+                }
+                receiverStart = i + 1;
+            }
+        }
+
+        if(identifierRegistry != null) {
+            command.setIdentifierHandle(identifierRegistry.handleOf(line, senderStart, senderEnd));
+        }
+        if(senderIdentifierNeeded) {
+            command.setIdentifier(string(line, senderStart, senderEnd));
+        }
+
+        int messageStart = indexOf(line, from, to, (byte) '"');
+        if(messageStart < 0) {
+            throw new RuntimeException("Message text is missing");
+        }
+        messageStart++;
+
+        int messageEnd = indexOf(line, messageStart, to, (byte) '"');
+        command.setMessage(string(line, messageStart, messageEnd < 0 ? to : messageEnd));
+    }
+
+    private static String nextToken(byte[] line, int from, int to) {
+        int tokenStart = skipSpaces(line, from, to);
+        if(tokenStart == to) {
+            return null;
+        }
+        return string(line, tokenStart, tokenEnd(line, tokenStart, to));
+    }
+
+    private static int skipSpaces(byte[] line, int from, int to) {
+        while(from < to && line[from] == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int tokenEnd(byte[] line, int from, int to) {
+        while(from < to && line[from] != ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(byte[] line, int from, int to) {
+        while(to > from && (line[to - 1] == '\r' || line[to - 1] == ' ')) {
+            to--;
+        }
+        return to;
+    }
+
+    private static int indexOf(byte[] line, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if(line[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] line, int from, int to, byte[] prefix) {
+        if(to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if(line[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] line, int from, int to) {
+        return new String(line, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String keyword) {
+        return keyword.getBytes(StandardCharsets.US_ASCII);
+    }
+}
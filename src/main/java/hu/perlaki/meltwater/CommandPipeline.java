@@ -0,0 +1,102 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Processes an input file in two stages connected by a {@link RingBuffer} of reused commands: the calling thread reads
+ * and parses the lines into the ring, an apply thread, the only one touching the SMS center, executes them in input
+ * order. Together with a {@link RingBufferSMSSender} the sending is a third stage on its own thread.
+ * <p>
+ * As with {@link InputProcessor}, an error of a command stops the processing: the commands before it are still
+ * executed, the ones after it are not, and the error is thrown from {@link #process(Path)}.
+ */
+@Slf4j
+public class CommandPipeline {
+
+    private final SMSService smsCenter;
+    private final SMSMetrics metrics;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+    private final CommandParser commandParser = new CommandParser();
+
+    public CommandPipeline(SMSService smsCenter, SMSMetrics metrics, int capacity, WaitStrategy waitStrategy) {
+        this.smsCenter = smsCenter;
+        this.metrics = metrics;
+        this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public void process(Path inputPath) {
+        long startTime = System.nanoTime();
+        RingBuffer<Command> commands = new RingBuffer<>(capacity, Command::new, waitStrategy);
+        ApplyStage applyStage = new ApplyStage(commands);
+        Thread applyThread = new Thread(applyStage, "sms-apply");
+        applyThread.start();
+
+        long lines = 0;
+        RuntimeException parseFailure = null;
+        try(FileChannel channel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
+            lines = new LineReader().read(channel, (buffer, from, to) -> {
+                if(commandParser.parse(buffer, from, to, commands.claim())) {
+                    commands.publish();
+                }
+            });
+        } catch (NoSuchFileException e) {
+            log.error("Input file could not be found", e);
+        } catch (IOException e) {
+            log.error("Error while reading the input file", e);
+        } catch (RuntimeException e) {
+            parseFailure = e;
+        } finally {
+            commands.close();
+            join(applyThread);
+        }
+
+        // a failed command stops the parser too, and the line the parser failed on comes after every applied one
+        if(applyStage.failure != null) {
+            throw applyStage.failure;
+        }
+        if(parseFailure != null) {
+            throw parseFailure;
+        }
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+        log.info("Processed {} lines in {} ms ({} lines/s)",
+                lines, elapsedNanos / 1_000_000, lines * 1_000_000_000L / elapsedNanos);
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the commands to be applied", e);
+        }
+    }
+
+    private class ApplyStage implements Runnable {
+        private final RingBuffer<Command> commands;
+        private final InputProcessor commandProcessor = new InputProcessor(smsCenter, metrics);
+        private volatile RuntimeException failure;
+
+        ApplyStage(RingBuffer<Command> commands) {
+            this.commands = commands;
+        }
+
+        @Override
+        public void run() {
+            try {
+                commands.consume(commandProcessor::processCommand);
+            } catch (RuntimeException e) {
+                failure = e;
+                commands.halt();
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Accepts the input file's line protocol over TCP. A single selector thread reads every connection into its own
+ * reused buffer and applies the complete lines to the SMS center in order, so a single-threaded SMSCenter can be fed
+ * by any number of producers. Clients may pipeline commands without waiting: the lines processed from one read are
+ * acknowledged together with {@code OK <count>}, a failing line with {@code ERR <reason>}, in input order. A
+ * connection is not read while its acknowledgements cannot be written, which pushes back on fast producers.
+ */
+@Slf4j
+public class CommandServer {
+
+    public static final int DEFAULT_READ_BUFFER_SIZE = 1 << 16;
+    public static final int MAX_LINE_LENGTH = 1 << 20;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 12;
+
+    private final InputProcessor inputProcessor;
+    private final int readBufferSize;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public CommandServer(SMSService smsCenter, InetSocketAddress address, SMSMetrics metrics) {
+        this(smsCenter, address, metrics, DEFAULT_READ_BUFFER_SIZE);
+    }
+
+    public CommandServer(SMSService smsCenter, InetSocketAddress address, SMSMetrics metrics, int readBufferSize) {
+        this.inputProcessor = new InputProcessor(smsCenter, metrics);
+        this.readBufferSize = readBufferSize;
+
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new RuntimeException("Command server could not be started on " + address, e);
+        }
+
+        thread = new Thread(this::run, "command-server");
+    }
+
+    public void start() {
+        thread.start();
+        log.info("Listening for commands on port {}", getPort());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        thread.join();
+    }
+
+    public void close() {
+        closed = true;
+        selector.wakeup();
+
+        try {
+            if(thread.isAlive() && thread != Thread.currentThread()) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while stopping the command server", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while(!closed) {
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Command server stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.error("Error while closing the selector", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        try {
+            if(!key.isValid()) {
+                return;
+            }
+
+            if(key.isAcceptable()) {
+                accept();
+                return;
+            }
+
+            Connection connection = (Connection) key.attachment();
+            if(key.isReadable()) {
+                connection.read();
+            }
+            if(key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (IOException e) {
+            log.warn("Closing connection after error: {}", e.getMessage());
+            closeQuietly(key);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if(channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.warn("Error while closing a connection", e);
+        }
+    }
+
+    private class Connection implements LineReader.LineHandler {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(readBufferSize);
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private int processedLines;
+        private boolean endOfInput;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            int read = channel.read(readBuffer);
+            if(read == 0) {
+                return;
+            }
+
+            readBuffer.flip();
+            if(read < 0) {
+                endOfInput = true;
+                LineReader.forEachLine(readBuffer, this);
+                if(readBuffer.hasRemaining()) {
+                    onLine(readBuffer.array(), readBuffer.position(), readBuffer.limit());
+                }
+                readBuffer.clear();
+            } else {
+                LineReader.forEachLine(readBuffer, this);
+                compact();
+            }
+
+            acknowledge();
+            write();
+        }
+
+        void write() throws IOException {
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            writeBuffer.compact();
+
+            if(writeBuffer.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if(endOfInput) {
+                closeQuietly(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        @Override
+        public void onLine(byte[] buffer, int from, int to) {
+            try {
+                inputProcessor.processLine(buffer, from, to);
+                processedLines++;
+            } catch (RuntimeException e) {
+                acknowledge();
+                // e.g. a NullPointerException has no message, its type still tells what went wrong
+                reply("ERR " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+            }
+        }
+
+        private void acknowledge() {
+            if(processedLines > 0) {
+                reply("OK " + processedLines);
+                processedLines = 0;
+            }
+        }
+
+        private void reply(String response) {
+            byte[] bytes = (response + "\n").getBytes(StandardCharsets.UTF_8);
+
+            if(writeBuffer.remaining() < bytes.length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + bytes.length));
+                writeBuffer.flip();
+                grown.put(writeBuffer);
+                writeBuffer = grown;
+            }
+            writeBuffer.put(bytes);
+        }
+
+        private void compact() {
+            if(readBuffer.position() > 0 || readBuffer.limit() < readBuffer.capacity()) {
+                readBuffer.compact();
+                return;
+            }
+
+            if(readBuffer.capacity() >= MAX_LINE_LENGTH) {
+                readBuffer.clear();
+                reply("ERR Line is longer than " + MAX_LINE_LENGTH + " bytes");
+                endOfInput = true;
+                return;
+            }
+
+            ByteBuffer grown = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            grown.put(readBuffer);
+            readBuffer = grown;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package hu.perlaki.meltwater;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.util.stream.Collectors.toList;
+
+public class ConcurrentSMSCenter implements SMSService {
+
+    public static final int DEFAULT_STRIPES = 256;
+
+    protected Set<String> subscribedNumbers = ConcurrentHashMap.newKeySet();
+    protected Map<String, String> registeredNumbers = new ConcurrentHashMap<>();
+    protected Map<String, List<String>> groups = new ConcurrentHashMap<>();
+    protected Map<String, Set<String>> groupMembers = new ConcurrentHashMap<>();
+    protected Map<String, Set<String>> memberGroups = new ConcurrentHashMap<>();
+    protected PhonePatternIndex groupPatterns = new PhonePatternIndex();
+
+    protected final HeldMessageStore heldMessages;
+
+    private final SMSSender smsSender;
+    private final Object[] stripes;
+    private final ReadWriteLock groupLock = new ReentrantReadWriteLock();
+    private volatile SMSMetrics metrics = SMSMetrics.NONE;
+    private volatile AuditTrail auditTrail = AuditTrail.LOG;
+
+    public ConcurrentSMSCenter(SMSSender smsSender) {
+        this(smsSender, new BoundedHeldMessageStore(), DEFAULT_STRIPES);
+    }
+
+    public ConcurrentSMSCenter(SMSSender smsSender, HeldMessageStore heldMessages) {
+        this(smsSender, heldMessages, DEFAULT_STRIPES);
+    }
+
+    public ConcurrentSMSCenter(SMSSender smsSender, HeldMessageStore heldMessages, int stripeCount) {
+        if(Integer.bitCount(stripeCount) != 1) {
+            throw new RuntimeException("The number of lock stripes must be a power of two");
+        }
+
+        this.smsSender = smsSender;
+        this.heldMessages = heldMessages;
+        this.stripes = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public void setMetrics(SMSMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void setAuditTrail(AuditTrail auditTrail) {
+        this.auditTrail = auditTrail;
+    }
+
+    @Override
+    public void register(String identifier, String phoneNumber) {
+        auditTrail.register(identifier, phoneNumber);
+
+        // rejects the same numbers as SMSCenter, on the caller's thread
+        PhoneNumberCodec.encode(phoneNumber);
+        if (registeredNumbers.putIfAbsent(identifier, phoneNumber) != null) {
+            throw new RuntimeException("An identifier cannot be registered in the system more than one time");
+        }
+    }
+
+    @Override
+    public void subscribe(String identifier) {
+        auditTrail.subscribe(identifier);
+
+        String phoneNumber = registeredNumbers.get(identifier);
+
+        if(phoneNumber == null) {
+            return;
+        }
+
+        groupLock.readLock().lock();
+        try {
+            synchronized (stripeOf(phoneNumber)) {
+                sendHeldMessage(phoneNumber);
+                if(subscribedNumbers.add(phoneNumber)) {
+                    joinGroups(phoneNumber);
+                }
+            }
+        } finally {
+            groupLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void unsubscribe(String identifier) {
+        auditTrail.unsubscribe(identifier);
+
+        String phoneNumber = registeredNumbers.get(identifier);
+
+        if(phoneNumber == null) {
+            return;
+        }
+
+        groupLock.readLock().lock();
+        try {
+            synchronized (stripeOf(phoneNumber)) {
+                if(subscribedNumbers.remove(phoneNumber)) {
+                    leaveGroups(phoneNumber);
+                }
+            }
+        } finally {
+            groupLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void createGroup(String groupIdentifier, List<String> phonePatterns) {
+        auditTrail.createGroup(groupIdentifier, phonePatterns);
+
+        final List<String> trimmedPhonePatterns = phonePatterns
+                .stream()
+                .map(pp -> pp.replace("*", ""))
+                .collect(toList());
+
+        groupLock.writeLock().lock();
+        try {
+            removeGroup(groupIdentifier);
+
+            Set<String> members = ConcurrentHashMap.newKeySet();
+            for (String phoneNumber : subscribedNumbers) {
+                if(matchesAny(phoneNumber, trimmedPhonePatterns)) {
+                    members.add(phoneNumber);
+                    memberGroups.computeIfAbsent(phoneNumber, pn -> ConcurrentHashMap.newKeySet()).add(groupIdentifier);
+                }
+            }
+            trimmedPhonePatterns.forEach(phonePattern -> groupPatterns.add(phonePattern, groupIdentifier));
+
+            groups.put(groupIdentifier, trimmedPhonePatterns);
+            groupMembers.put(groupIdentifier, members);
+        } finally {
+            groupLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void sendMessage(String senderIdentifier, String receiverIdentifier, String message) {
+        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
+        String receiverPhoneNumber = registeredNumbers.get(receiverIdentifier);
+
+        if(senderPhoneNumber == null) {
+            throw new RuntimeException("Sender is not registered!");
+        } else if (receiverPhoneNumber == null) {
+            throw new RuntimeException("Receiver is not registered!");
+        } else if (!subscribedNumbers.contains(senderPhoneNumber)) {
+            throw new RuntimeException("Sender is not subscribed!");
+        }
+
+        if(subscribedNumbers.contains(receiverPhoneNumber)) {
+            smsSender.send(senderPhoneNumber, receiverPhoneNumber, message);
+            return;
+        }
+
+        synchronized (stripeOf(receiverPhoneNumber)) {
+            if(!subscribedNumbers.contains(receiverPhoneNumber)) {
+                holdMessage(message, senderPhoneNumber, receiverPhoneNumber);
+                return;
+            }
+        }
+
+        smsSender.send(senderPhoneNumber, receiverPhoneNumber, message);
+    }
+
+    @Override
+    public void sendBroadcast(String senderIdentifier, String message) {
+        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
+
+        metrics.messageFannedOut(subscribedNumbers.size());
+        for (String receiverPhoneNumber : subscribedNumbers) {
+            smsSender.send(senderPhoneNumber, receiverPhoneNumber, message);
+        }
+    }
+
+    @Override
+    public void sendGroupMessage(String senderIdentifier, String groupIdentifier, String message) {
+        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
+        Set<String> members = groupMembers.get(groupIdentifier);
+
+        if(members == null) {
+            return;
+        }
+
+        metrics.messageFannedOut(members.size());
+        for (String receiverPhoneNumber : members) {
+            smsSender.send(senderPhoneNumber, receiverPhoneNumber, message);
+        }
+    }
+
+    @Override
+    public void close() {
+        auditTrail.close();
+        heldMessages.close();
+    }
+
+    private Object stripeOf(String phoneNumber) {
+        int hash = phoneNumber.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private void holdMessage(String message, String senderPhoneNumber, String receiverPhoneNumber) {
+        heldMessages.hold(receiverPhoneNumber, new HeldMessage(senderPhoneNumber, message));
+    }
+
+    private void sendHeldMessage(String receiverPhoneNumber) {
+        List<HeldMessage> receiverHeldMessages = heldMessages.drain(receiverPhoneNumber);
+
+        if(!receiverHeldMessages.isEmpty()) {
+            metrics.heldMessagesDrained(receiverHeldMessages.size());
+        }
+
+        for (HeldMessage heldMessage : receiverHeldMessages) {
+            smsSender.send(heldMessage.getSenderPhoneNumber(), receiverPhoneNumber, heldMessage.getMessage());
+        }
+    }
+
+    private void removeGroup(String groupIdentifier) {
+        List<String> phonePatterns = groups.remove(groupIdentifier);
+        Set<String> members = groupMembers.remove(groupIdentifier);
+
+        if(phonePatterns != null) {
+            phonePatterns.forEach(phonePattern -> groupPatterns.remove(phonePattern, groupIdentifier));
+        }
+        if(members != null) {
+            for (String phoneNumber : members) {
+                Set<String> phoneGroups = memberGroups.get(phoneNumber);
+                if(phoneGroups != null) {
+                    phoneGroups.remove(groupIdentifier);
+                }
+            }
+        }
+    }
+
+    private void joinGroups(String phoneNumber) {
+        groupPatterns.forEachMatching(phoneNumber, groupIdentifier -> {
+            if(groupMembers.get(groupIdentifier).add(phoneNumber)) {
+                memberGroups.computeIfAbsent(phoneNumber, pn -> ConcurrentHashMap.newKeySet()).add(groupIdentifier);
+            }
+        });
+    }
+
+    private void leaveGroups(String phoneNumber) {
+        Set<String> phoneGroups = memberGroups.remove(phoneNumber);
+
+        if(phoneGroups != null) {
+            phoneGroups.forEach(groupIdentifier -> groupMembers.get(groupIdentifier).remove(phoneNumber));
+        }
+    }
+
+    private static boolean matchesAny(String phoneNumber, List<String> trimmedPhonePatterns) {
+        for (String phonePattern : trimmedPhonePatterns) {
+            if(phoneNumber.startsWith(phonePattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
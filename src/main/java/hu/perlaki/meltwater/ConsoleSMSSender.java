@@ -0,0 +1,11 @@
+package hu.perlaki.meltwater;
+
+public class ConsoleSMSSender implements SMSSender {
+
+    @Override
+    public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        String output = String.format("%s %s \"%s\"", senderPhoneNumber, receiverPhoneNumber, message);
+
+        System.out.println(output);
+    }
+}
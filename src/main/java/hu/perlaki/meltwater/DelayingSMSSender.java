@@ -0,0 +1,27 @@
+package hu.perlaki.meltwater;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class DelayingSMSSender implements SMSSender {
+
+    private final SMSSender transport;
+    private final long latencyMillis;
+
+    @Override
+    public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending a message", e);
+        }
+
+        transport.send(senderPhoneNumber, receiverPhoneNumber, message);
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+    }
+}
@@ -0,0 +1,44 @@
+package hu.perlaki.meltwater;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The parts of an output line shared by every receiver of a broadcast or group message, encoded once: the sender's
+ * phone number before the receiver and the quoted message after it.
+ */
+public final class EncodedMessage {
+
+    private final String senderPhoneNumber;
+    private final String message;
+    private final byte[] head;
+    private final byte[] tail;
+
+    public EncodedMessage(String senderPhoneNumber, String message) {
+        this.senderPhoneNumber = senderPhoneNumber;
+        this.message = message;
+        this.head = (senderPhoneNumber + " ").getBytes(StandardCharsets.UTF_8);
+        this.tail = (" \"" + message + "\"\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getSenderPhoneNumber() {
+        return senderPhoneNumber;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    int encodedLength() {
+        return head.length + PhoneNumberCodec.MAX_DIGITS + 1 + tail.length;
+    }
+
+    /**
+     * Writes the whole line for the receiver, the caller has to make sure {@link #encodedLength()} bytes fit.
+     */
+    void encode(ByteBuffer target, long receiverPhoneNumber) {
+        target.put(head);
+        PhoneNumberCodec.put(target, receiverPhoneNumber);
+        target.put(tail);
+    }
+}
@@ -0,0 +1,10 @@
+package hu.perlaki.meltwater;
+
+/**
+ * An SMSSender that can deliver one message to many receivers from a payload encoded only once. The receivers are
+ * passed in their {@link PhoneNumberCodec} form, so the phone numbers are not decoded into strings either.
+ */
+public interface FanOutSMSSender extends SMSSender {
+
+    void send(EncodedMessage message, long receiverPhoneNumber);
+}
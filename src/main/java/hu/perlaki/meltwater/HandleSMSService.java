@@ -0,0 +1,17 @@
+package hu.perlaki.meltwater;
+
+/**
+ * An {@link SMSService} that also accepts identifiers already resolved to handles of its
+ * {@link IdentifierRegistry}, so a parser can look receivers up straight from the input bytes.
+ */
+public interface HandleSMSService extends SMSService {
+
+    IdentifierRegistry getIdentifierRegistry();
+
+    void sendMessage(int senderHandle, int receiverHandle, String message);
+
+    /**
+     * Sends a parsed message command, whose sender and number receivers may already be resolved to handles.
+     */
+    void sendToTargets(Command command);
+}
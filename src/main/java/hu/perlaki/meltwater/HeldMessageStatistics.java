@@ -0,0 +1,16 @@
+package hu.perlaki.meltwater;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class HeldMessageStatistics {
+    int receivers;
+    long heldMessages;
+    long heapMessages;
+    long spilledMessages;
+    int maxQueueDepth;
+    long evictedMessages;
+    long expiredMessages;
+}
@@ -0,0 +1,22 @@
+package hu.perlaki.meltwater;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+public interface HeldMessageStore {
+
+    void hold(String receiverPhoneNumber, HeldMessage heldMessage);
+
+    List<HeldMessage> drain(String receiverPhoneNumber);
+
+    List<HeldMessage> peek(String receiverPhoneNumber);
+
+    int depth(String receiverPhoneNumber);
+
+    HeldMessageStatistics statistics();
+
+    void forEach(BiConsumer<String, HeldMessage> action);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,430 @@
+package hu.perlaki.meltwater;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Assigns dense int handles to registered identifiers. Per handle it keeps the identifier as UTF-8 bytes, so it can
+ * be looked up straight from an input buffer, the phone number encoded by {@link PhoneNumberCodec} and a bit telling
+ * whether that phone number is subscribed. A reverse index chains together the handles registered with the same
+ * phone number. The {@code Map<String, String>} methods encode and decode at the boundary.
+ */
+public class IdentifierRegistry extends AbstractMap<String, String> {
+
+    public static final int NO_HANDLE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long NO_PHONE_NUMBER = 0;
+
+    private byte[][] identifiers = new byte[MIN_CAPACITY][];
+    private long[] phoneNumbers = new long[MIN_CAPACITY];
+    private int[] nextHandleWithSamePhoneNumber = new int[MIN_CAPACITY];
+    private final BitSet subscribedHandles = new BitSet();
+    private int[] freeHandles = new int[MIN_CAPACITY];
+    private int freeHandleCount;
+    private int handleLimit;
+    private int size;
+
+    // open-addressing index of handle + 1 by identifier
+    private int[] identifierIndex = new int[MIN_CAPACITY];
+
+    // open-addressing index of the first handle and the subscription state by phone number
+    private long[] phoneNumberIndex = new long[MIN_CAPACITY];
+    private int[] firstHandles = new int[MIN_CAPACITY];
+    private final BitSet subscribedPhoneNumberSlots = new BitSet();
+    private int phoneNumberIndexSize;
+
+    public int handleOf(String identifier) {
+        int hash = 0;
+        for (int i = 0; i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            if(c >= 0x80) {
+                byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+                return handleOf(bytes, 0, bytes.length);
+            }
+            hash = 31 * hash + c;
+        }
+
+        int mask = identifierIndex.length - 1;
+        for (int slot = slotOf(hash, mask); identifierIndex[slot] != 0; slot = (slot + 1) & mask) {
+            int handle = identifierIndex[slot] - 1;
+            if(equals(identifiers[handle], identifier)) {
+                return handle;
+            }
+        }
+        return NO_HANDLE;
+    }
+
+    public int handleOf(byte[] buffer, int from, int to) {
+        int mask = identifierIndex.length - 1;
+        for (int slot = slotOf(buffer, from, to, mask); identifierIndex[slot] != 0; slot = (slot + 1) & mask) {
+            int handle = identifierIndex[slot] - 1;
+            if(equals(identifiers[handle], buffer, from, to)) {
+                return handle;
+            }
+        }
+        return NO_HANDLE;
+    }
+
+    public String identifierOf(int handle) {
+        return new String(identifiers[handle], StandardCharsets.UTF_8);
+    }
+
+    public long phoneNumberOf(int handle) {
+        return phoneNumbers[handle];
+    }
+
+    public boolean isSubscribed(int handle) {
+        return subscribedHandles.get(handle);
+    }
+
+    public int register(String identifier, long phoneNumber) {
+        byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+        int handle = handleOf(bytes, 0, bytes.length);
+
+        if(handle != NO_HANDLE) {
+            if(phoneNumbers[handle] != phoneNumber) {
+                unlink(handle);
+                link(handle, phoneNumber);
+            }
+            return handle;
+        }
+
+        handle = allocateHandle();
+        identifiers[handle] = bytes;
+        link(handle, phoneNumber);
+        insertIdentifier(handle);
+        size++;
+        return handle;
+    }
+
+    public void setSubscribed(long phoneNumber, boolean subscribed) {
+        int slot = phoneNumberSlotOf(phoneNumber);
+
+        if(slot < 0) {
+            if(!subscribed) {
+                return;
+            }
+            slot = insertPhoneNumber(phoneNumber);
+        }
+
+        subscribedPhoneNumberSlots.set(slot, subscribed);
+        for (int handle = firstHandles[slot]; handle != NO_HANDLE; handle = nextHandleWithSamePhoneNumber[handle]) {
+            subscribedHandles.set(handle, subscribed);
+        }
+
+        if(!subscribed && firstHandles[slot] == NO_HANDLE) {
+            removePhoneNumberSlot(slot);
+        }
+    }
+
+    public void forEachHandleOf(long phoneNumber, IntConsumer action) {
+        int slot = phoneNumberSlotOf(phoneNumber);
+
+        if(slot >= 0) {
+            for (int handle = firstHandles[slot]; handle != NO_HANDLE; handle = nextHandleWithSamePhoneNumber[handle]) {
+                action.accept(handle);
+            }
+        }
+    }
+
+    @Override
+    public String get(Object key) {
+        int handle = key instanceof String ? handleOf((String) key) : NO_HANDLE;
+        return handle == NO_HANDLE ? null : PhoneNumberCodec.decode(phoneNumbers[handle]);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && handleOf((String) key) != NO_HANDLE;
+    }
+
+    @Override
+    public String put(String identifier, String phoneNumber) {
+        String previous = get(identifier);
+        register(identifier, PhoneNumberCodec.encode(phoneNumber));
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int handle = key instanceof String ? handleOf((String) key) : NO_HANDLE;
+        if(handle == NO_HANDLE) {
+            return null;
+        }
+
+        String previous = PhoneNumberCodec.decode(phoneNumbers[handle]);
+        removeIdentifier(handle);
+        unlink(handle);
+        identifiers[handle] = null;
+        phoneNumbers[handle] = NO_PHONE_NUMBER;
+        if(freeHandleCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeHandles.length * 2);
+        }
+        freeHandles[freeHandleCount++] = handle;
+        size--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (int handle = 0; handle < handleLimit; handle++) {
+            if(identifiers[handle] != null) {
+                remove(identifierOf(handle));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+                    private int next = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < handleLimit;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Map.Entry<String, String> entry = new SimpleImmutableEntry<>(
+                                identifierOf(next), PhoneNumberCodec.decode(phoneNumbers[next]));
+                        next = advance(next + 1);
+                        return entry;
+                    }
+
+                    private int advance(int from) {
+                        while(from < handleLimit && identifiers[from] == null) {
+                            from++;
+                        }
+                        return from;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int allocateHandle() {
+        if(freeHandleCount > 0) {
+            return freeHandles[--freeHandleCount];
+        }
+
+        if(handleLimit == identifiers.length) {
+            int capacity = identifiers.length * 2;
+            identifiers = Arrays.copyOf(identifiers, capacity);
+            phoneNumbers = Arrays.copyOf(phoneNumbers, capacity);
+            nextHandleWithSamePhoneNumber = Arrays.copyOf(nextHandleWithSamePhoneNumber, capacity);
+        }
+        return handleLimit++;
+    }
+
+    private void link(int handle, long phoneNumber) {
+        int slot = phoneNumberSlotOf(phoneNumber);
+        if(slot < 0) {
+            slot = insertPhoneNumber(phoneNumber);
+        }
+
+        phoneNumbers[handle] = phoneNumber;
+        nextHandleWithSamePhoneNumber[handle] = firstHandles[slot];
+        firstHandles[slot] = handle;
+        subscribedHandles.set(handle, subscribedPhoneNumberSlots.get(slot));
+    }
+
+    private void unlink(int handle) {
+        int slot = phoneNumberSlotOf(phoneNumbers[handle]);
+
+        if(firstHandles[slot] == handle) {
+            firstHandles[slot] = nextHandleWithSamePhoneNumber[handle];
+        } else {
+            int previous = firstHandles[slot];
+            while(nextHandleWithSamePhoneNumber[previous] != handle) {
+                previous = nextHandleWithSamePhoneNumber[previous];
+            }
+            nextHandleWithSamePhoneNumber[previous] = nextHandleWithSamePhoneNumber[handle];
+        }
+        subscribedHandles.clear(handle);
+
+        if(firstHandles[slot] == NO_HANDLE && !subscribedPhoneNumberSlots.get(slot)) {
+            removePhoneNumberSlot(slot);
+        }
+    }
+
+    private void insertIdentifier(int handle) {
+        if(size >= identifierIndex.length / 4 * 3) {
+            int[] oldIndex = identifierIndex;
+            identifierIndex = new int[oldIndex.length * 2];
+            for (int entry : oldIndex) {
+                if(entry != 0) {
+                    placeIdentifier(entry - 1);
+                }
+            }
+        }
+        placeIdentifier(handle);
+    }
+
+    private void placeIdentifier(int handle) {
+        int mask = identifierIndex.length - 1;
+        byte[] identifier = identifiers[handle];
+
+        int slot = slotOf(identifier, 0, identifier.length, mask);
+        while(identifierIndex[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        identifierIndex[slot] = handle + 1;
+    }
+
+    private void removeIdentifier(int handle) {
+        int mask = identifierIndex.length - 1;
+        byte[] identifier = identifiers[handle];
+
+        int gap = slotOf(identifier, 0, identifier.length, mask);
+        while(identifierIndex[gap] != handle + 1) {
+            gap = (gap + 1) & mask;
+        }
+
+        // backward shift deletion keeps every probe sequence unbroken without tombstones
+        for (int slot = (gap + 1) & mask; identifierIndex[slot] != 0; slot = (slot + 1) & mask) {
+            byte[] moved = identifiers[identifierIndex[slot] - 1];
+            int home = slotOf(moved, 0, moved.length, mask);
+            if(((slot - home) & mask) >= ((slot - gap) & mask)) {
+                identifierIndex[gap] = identifierIndex[slot];
+                gap = slot;
+            }
+        }
+        identifierIndex[gap] = 0;
+    }
+
+    private int phoneNumberSlotOf(long phoneNumber) {
+        int mask = phoneNumberIndex.length - 1;
+
+        int slot = phoneNumberSlot(phoneNumber, mask);
+        while(phoneNumberIndex[slot] != NO_PHONE_NUMBER) {
+            if(phoneNumberIndex[slot] == phoneNumber) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insertPhoneNumber(long phoneNumber) {
+        if(phoneNumberIndexSize >= phoneNumberIndex.length / 4 * 3) {
+            long[] oldIndex = phoneNumberIndex;
+            int[] oldFirstHandles = firstHandles;
+            BitSet oldSubscribed = (BitSet) subscribedPhoneNumberSlots.clone();
+
+            phoneNumberIndex = new long[oldIndex.length * 2];
+            firstHandles = new int[oldIndex.length * 2];
+            subscribedPhoneNumberSlots.clear();
+            for (int i = 0; i < oldIndex.length; i++) {
+                if(oldIndex[i] != NO_PHONE_NUMBER) {
+                    int slot = placePhoneNumber(oldIndex[i]);
+                    firstHandles[slot] = oldFirstHandles[i];
+                    subscribedPhoneNumberSlots.set(slot, oldSubscribed.get(i));
+                }
+            }
+        }
+
+        int slot = placePhoneNumber(phoneNumber);
+        firstHandles[slot] = NO_HANDLE;
+        subscribedPhoneNumberSlots.clear(slot);
+        phoneNumberIndexSize++;
+        return slot;
+    }
+
+    private int placePhoneNumber(long phoneNumber) {
+        int mask = phoneNumberIndex.length - 1;
+
+        int slot = phoneNumberSlot(phoneNumber, mask);
+        while(phoneNumberIndex[slot] != NO_PHONE_NUMBER) {
+            slot = (slot + 1) & mask;
+        }
+        phoneNumberIndex[slot] = phoneNumber;
+        return slot;
+    }
+
+    private void removePhoneNumberSlot(int gap) {
+        int mask = phoneNumberIndex.length - 1;
+
+        for (int slot = (gap + 1) & mask; phoneNumberIndex[slot] != NO_PHONE_NUMBER; slot = (slot + 1) & mask) {
+            int home = phoneNumberSlot(phoneNumberIndex[slot], mask);
+            if(((slot - home) & mask) >= ((slot - gap) & mask)) {
+                phoneNumberIndex[gap] = phoneNumberIndex[slot];
+                firstHandles[gap] = firstHandles[slot];
+                subscribedPhoneNumberSlots.set(gap, subscribedPhoneNumberSlots.get(slot));
+                gap = slot;
+            }
+        }
+
+        phoneNumberIndex[gap] = NO_PHONE_NUMBER;
+        subscribedPhoneNumberSlots.clear(gap);
+        phoneNumberIndexSize--;
+    }
+
+    private static int phoneNumberSlot(long phoneNumber, int mask) {
+        return (int) PhoneNumberSet.mix(phoneNumber) & mask;
+    }
+
+    private static int slotOf(byte[] buffer, int from, int to, int mask) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return slotOf(hash, mask);
+    }
+
+    private static int slotOf(int hash, int mask) {
+        return (int) PhoneNumberSet.mix(hash) & mask;
+    }
+
+    private static boolean equals(byte[] identifier, String asciiIdentifier) {
+        if(identifier.length != asciiIdentifier.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < identifier.length; i++) {
+            if(identifier[i] != asciiIdentifier.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] identifier, byte[] buffer, int from, int to) {
+        if(identifier.length != to - from) {
+            return false;
+        }
+
+        for (int i = 0; i < identifier.length; i++) {
+            if(identifier[i] != buffer[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
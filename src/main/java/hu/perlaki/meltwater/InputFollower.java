@@ -0,0 +1,207 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Follows input files, or every file of input directories, as they are appended to. Only complete lines are
+ * processed and the offset after the last processed line of every file is written into a checkpoint file
+ * periodically and on close, so a restarted follower continues where the previous one stopped. Lines processed after
+ * the last checkpoint are processed again after a crash. A file that became shorter than its offset is read again
+ * from the start.
+ */
+@Slf4j
+public class InputFollower {
+
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 1000;
+
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    private final InputProcessor inputProcessor;
+    private final List<Path> inputs = new ArrayList<>();
+    private final Path checkpointPath;
+    private final long checkpointIntervalMillis;
+    private final Map<Path, Long> offsets = new LinkedHashMap<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(LineReader.DEFAULT_BUFFER_SIZE);
+    private long lastCheckpoint;
+    private volatile boolean closed;
+
+    public InputFollower(SMSService smsCenter, SMSMetrics metrics, List<Path> inputs, Path checkpointPath,
+                         long checkpointIntervalMillis) {
+        this.inputProcessor = new InputProcessor(smsCenter, metrics);
+        this.checkpointPath = checkpointPath;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+
+        for (Path input : inputs) {
+            this.inputs.add(input.toAbsolutePath().normalize());
+        }
+        loadCheckpoint();
+    }
+
+    /**
+     * Processes the lines appended to the inputs until {@link #close()} is called.
+     */
+    public void follow() {
+        try(WatchService watchService = inputs.get(0).getFileSystem().newWatchService()) {
+            for (Path directory : watchedDirectories()) {
+                directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            }
+
+            while(!closed) {
+                catchUp();
+                if(System.currentTimeMillis() - lastCheckpoint >= checkpointIntervalMillis) {
+                    checkpoint();
+                }
+
+                WatchKey key = watchService.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if(key != null) {
+                    // the events are not needed, every input is checked for new lines on every wake-up
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Inputs could not be watched", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            checkpoint();
+        }
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Processes every complete line appended to the inputs since the last call.
+     */
+    public void catchUp() {
+        for (Path input : inputs) {
+            if(Files.isDirectory(input)) {
+                try(Stream<Path> files = Files.list(input)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(this::readNewLines);
+                } catch (IOException e) {
+                    log.error("Input directory {} could not be listed", input, e);
+                }
+            } else {
+                readNewLines(input);
+            }
+        }
+    }
+
+    public void checkpoint() {
+        Properties checkpoint = new Properties();
+        offsets.forEach((path, offset) -> checkpoint.setProperty(path.toString(), Long.toString(offset)));
+
+        Path temporary = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        try {
+            try(OutputStream output = Files.newOutputStream(temporary)) {
+                checkpoint.store(output, "Offsets after the last processed line");
+            }
+            Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastCheckpoint = System.currentTimeMillis();
+        } catch (IOException e) {
+            log.error("Checkpoint could not be written to {}", checkpointPath, e);
+        }
+    }
+
+    public long offsetOf(Path input) {
+        return offsets.getOrDefault(input.toAbsolutePath().normalize(), 0L);
+    }
+
+    private void readNewLines(Path file) {
+        long offset = offsets.getOrDefault(file, 0L);
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() < offset) {
+                log.warn("{} is shorter than its processed offset {}, reading it from the start", file, offset);
+                offset = 0;
+            }
+            channel.position(offset);
+
+            buffer.clear();
+            while(channel.read(buffer) > 0) {
+                buffer.flip();
+                int lineStart = buffer.position();
+                LineReader.forEachLine(buffer, this::processLine);
+                offset += buffer.position() - lineStart;
+                compact();
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("{} does not exist yet", file);
+        } catch (IOException e) {
+            log.error("Error while reading {}", file, e);
+        }
+
+        offsets.put(file, offset);
+    }
+
+    private void processLine(byte[] line, int from, int to) {
+        try {
+            inputProcessor.processLine(line, from, to);
+        } catch (RuntimeException e) {
+            log.error("Command could not be processed: {}", e.getMessage());
+        }
+    }
+
+    private void compact() {
+        if(buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+            grown.put(buffer);
+            buffer = grown;
+        } else {
+            buffer.compact();
+        }
+    }
+
+    private Set<Path> watchedDirectories() {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Path input : inputs) {
+            directories.add(Files.isDirectory(input) ? input : input.getParent());
+        }
+        return directories;
+    }
+
+    private void loadCheckpoint() {
+        if(!Files.exists(checkpointPath)) {
+            return;
+        }
+
+        Properties checkpoint = new Properties();
+        try(InputStream input = Files.newInputStream(checkpointPath)) {
+            checkpoint.load(input);
+        } catch (IOException e) {
+            throw new RuntimeException("Checkpoint could not be read from " + checkpointPath, e);
+        }
+
+        for (String path : checkpoint.stringPropertyNames()) {
+            offsets.put(checkpointPath.getFileSystem().getPath(path), Long.parseLong(checkpoint.getProperty(path)));
+        }
+        log.info("Resuming {} inputs from {}", offsets.size(), checkpointPath);
+    }
+}
@@ -1,77 +1,91 @@
 package hu.perlaki.meltwater;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 @Slf4j
-@RequiredArgsConstructor
 public class InputProcessor {
 
-    private final SMSCenter smsCenter;
+    public static final Path DEFAULT_INPUT_PATH = Paths.get("src/main/resources/input.txt");
 
-    public void process() {
-        try(FileInputStream fileInputStream = new FileInputStream("src/main/resources/input.txt");
-                Scanner scanner = new Scanner(fileInputStream)) {
+    private final SMSService smsCenter;
+    private final Path inputPath;
+    private final SMSMetrics metrics;
+    private final CommandParser commandParser;
+    private final Command command = new Command();
 
-            while(scanner.hasNext()) {
-                String command = scanner.nextLine();
+    public InputProcessor(SMSService smsCenter) {
+        this(smsCenter, DEFAULT_INPUT_PATH);
+    }
 
-                processCommand(command);
-            }
-        } catch (FileNotFoundException e) {
-            log.error("Input file could not be found", e);
-            return;
-        } catch (IOException e) {
-            log.error("Error while closing the input file", e);
-            return;
-        }
+    public InputProcessor(SMSService smsCenter, SMSMetrics metrics) {
+        this(smsCenter, DEFAULT_INPUT_PATH, metrics);
     }
 
-    private void processCommand(String command) {
-        final String[] commandParts = command.split(" ");
-        if(command.startsWith("number")) {
-            smsCenter.register(commandParts[0], commandParts[1]);
-        } else if(command.startsWith("subscribe")) {
-            smsCenter.subscribe(commandParts[1]);
-        } else if(command.startsWith("unsubscribe")) {
-            smsCenter.unsubscribe(commandParts[1]);
-        } else if(command.startsWith("group")) {
-            createGroup(commandParts);
-        } else if(command.startsWith("message")) {
-            sendMessage(command, commandParts);
-        }
+    public InputProcessor(SMSService smsCenter, Path inputPath) {
+        this(smsCenter, inputPath, SMSMetrics.NONE);
+    }
+
+    public InputProcessor(SMSService smsCenter, Path inputPath, SMSMetrics metrics) {
+        this.smsCenter = smsCenter;
+        this.inputPath = inputPath;
+        this.metrics = metrics;
+        this.commandParser = smsCenter instanceof HandleSMSService
+                ? new CommandParser(((HandleSMSService) smsCenter).getIdentifierRegistry())
+                : new CommandParser();
     }
 
-    private void createGroup(String[] commandParts) {
-        List<String> phonePatterns = new ArrayList<>();
+    public void process() {
+        long startTime = System.nanoTime();
+
+        try(FileChannel channel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
+            long lines = new LineReader().read(channel, this::processLine);
 
-        for (int i = 1; i < commandParts.length; i++) {
-            phonePatterns.add(commandParts[i]);
+            long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+            log.info("Processed {} lines in {} ms ({} lines/s)",
+                    lines, elapsedNanos / 1_000_000, lines * 1_000_000_000L / elapsedNanos);
+        } catch (NoSuchFileException e) {
+            log.error("Input file could not be found", e);
+        } catch (IOException e) {
+            log.error("Error while reading the input file", e);
         }
+    }
 
-        smsCenter.createGroup(commandParts[0], phonePatterns);
+    public void processLine(byte[] buffer, int from, int to) {
+        if(commandParser.parse(buffer, from, to, command)) {
+            processCommand(command);
+        }
     }
 
-    private void sendMessage(String command, String[] commandParts) {
-        String senderIdentifier = commandParts[1];
-        String[] receiverIdentifiers = commandParts[2].split(",");
-        String message = command.split("\"")[1];
+    public void processCommand(Command command) {
+        metrics.commandProcessed(command.getType());
 
-        for (String receiverIdentifier : receiverIdentifiers) {
-            if(receiverIdentifier.startsWith("number")) {
-                smsCenter.sendMessage(senderIdentifier, receiverIdentifier, message);
-            } else if(receiverIdentifier.startsWith("group")) {
-                smsCenter.sendGroupMessage(senderIdentifier, receiverIdentifier, message);
-            } if(receiverIdentifier.equals("broadcast")) {
-                smsCenter.sendBroadcast(senderIdentifier, message);
-            }
+        switch (command.getType()) {
+            case REGISTER:
+                smsCenter.register(command.getIdentifier(), command.getPhoneNumber());
+                break;
+            case SUBSCRIBE:
+                smsCenter.subscribe(command.getIdentifier());
+                break;
+            case UNSUBSCRIBE:
+                smsCenter.unsubscribe(command.getIdentifier());
+                break;
+            case GROUP:
+                smsCenter.createGroup(command.getIdentifier(), command.getTargets());
+                break;
+            case MESSAGE:
+                if(smsCenter instanceof HandleSMSService) {
+                    ((HandleSMSService) smsCenter).sendToTargets(command);
+                } else {
+                    smsCenter.sendToTargets(command.getIdentifier(), command.getTargets(), command.getMessage());
+                }
+                break;
         }
     }
 }
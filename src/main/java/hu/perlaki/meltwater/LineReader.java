@@ -0,0 +1,73 @@
+package hu.perlaki.meltwater;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+public class LineReader {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    public interface LineHandler {
+        void onLine(byte[] buffer, int from, int to);
+    }
+
+    private ByteBuffer buffer;
+
+    public LineReader() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public LineReader(int bufferSize) {
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    public long read(ReadableByteChannel channel, LineHandler handler) throws IOException {
+        long lines = 0;
+        buffer.clear();
+
+        while(channel.read(buffer) >= 0) {
+            buffer.flip();
+            lines += forEachLine(buffer, handler);
+            compact();
+        }
+
+        buffer.flip();
+        if(buffer.hasRemaining()) {
+            handler.onLine(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.arrayOffset() + buffer.limit());
+            lines++;
+        }
+        buffer.clear();
+
+        return lines;
+    }
+
+    public static int forEachLine(ByteBuffer buffer, LineHandler handler) {
+        byte[] bytes = buffer.array();
+        int offset = buffer.arrayOffset();
+        int lineStart = offset + buffer.position();
+        int end = offset + buffer.limit();
+        int lines = 0;
+
+        for (int i = lineStart; i < end; i++) {
+            if(bytes[i] == '\n') {
+                handler.onLine(bytes, lineStart, i);
+                lineStart = i + 1;
+                lines++;
+            }
+        }
+
+        buffer.position(lineStart - offset);
+        return lines;
+    }
+
+    private void compact() {
+        if(buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+            grown.put(buffer);
+            buffer = grown;
+        } else {
+            buffer.compact();
+        }
+    }
+}
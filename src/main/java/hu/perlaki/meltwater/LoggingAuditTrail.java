@@ -0,0 +1,31 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+@Slf4j
+public class LoggingAuditTrail implements AuditTrail {
+
+    @Override
+    public void register(String identifier, String phoneNumber) {
+        log.info("Registering identifier: {} with phoneNumber: {}", identifier, phoneNumber);
+    }
+
+    @Override
+    public void subscribe(String identifier) {
+        log.info("Subscribing identifier: {}", identifier);
+    }
+
+    @Override
+    public void unsubscribe(String identifier) {
+        log.info("Unsubscribing identifier: {}", identifier);
+    }
+
+    @Override
+    public void createGroup(String groupIdentifier, List<String> phonePatterns) {
+        if(log.isInfoEnabled()) {
+            log.info("Creating group with identifier: {}, patterns: {}", groupIdentifier, String.join(",", phonePatterns));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package hu.perlaki.meltwater;
+
+public class MeteredSMSSender implements FanOutSMSSender {
+
+    private final SMSSender delegate;
+    private final SMSMetrics metrics;
+
+    public MeteredSMSSender(SMSSender delegate, SMSMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        long startTime = System.nanoTime();
+        delegate.send(senderPhoneNumber, receiverPhoneNumber, message);
+        metrics.messageSent(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void send(EncodedMessage message, long receiverPhoneNumber) {
+        long startTime = System.nanoTime();
+        if(delegate instanceof FanOutSMSSender) {
+            ((FanOutSMSSender) delegate).send(message, receiverPhoneNumber);
+        } else {
+            delegate.send(message.getSenderPhoneNumber(), PhoneNumberCodec.decode(receiverPhoneNumber), message.getMessage());
+        }
+        metrics.messageSent(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,76 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class MetricsFileReporter {
+
+    private final SMSMetricsRegistry metrics;
+    private final Path outputPath;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sms-metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsFileReporter(SMSMetricsRegistry metrics, Path outputPath) {
+        this.metrics = metrics;
+        this.outputPath = outputPath;
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void report() {
+        try {
+            Files.write(outputPath, format(metrics.snapshot()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Error while writing the metrics snapshot", e);
+        }
+    }
+
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+    }
+
+    static String format(MetricsSnapshot snapshot) {
+        StringBuilder line = new StringBuilder();
+        line.append(snapshot.getTimestampMillis());
+        for (Map.Entry<Command.Type, Long> processedCommands : snapshot.getProcessedCommands().entrySet()) {
+            line.append(" commands.").append(processedCommands.getKey().name().toLowerCase())
+                    .append('=').append(processedCommands.getValue());
+        }
+        line.append(" send.count=").append(snapshot.getSentMessages())
+                .append(" send.p50.ns=").append(snapshot.getSendLatencyP50Nanos())
+                .append(" send.p99.ns=").append(snapshot.getSendLatencyP99Nanos())
+                .append(" send.p999.ns=").append(snapshot.getSendLatencyP999Nanos())
+                .append(" send.max.ns=").append(snapshot.getSendLatencyMaxNanos())
+                .append(" fanout.count=").append(snapshot.getFanOuts())
+                .append(" fanout.p50=").append(snapshot.getFanOutP50())
+                .append(" fanout.p99=").append(snapshot.getFanOutP99())
+                .append(" fanout.max=").append(snapshot.getFanOutMax())
+                .append(" held.messages=").append(snapshot.getHeldMessages())
+                .append(" held.maxDepth=").append(snapshot.getMaxHeldQueueDepth())
+                .append(" held.drained=").append(snapshot.getDrainedHeldMessages())
+                .append('\n');
+        return line.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package hu.perlaki.meltwater;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class MetricsSnapshot {
+    long timestampMillis;
+    Map<Command.Type, Long> processedCommands;
+    long sentMessages;
+    long sendLatencyP50Nanos;
+    long sendLatencyP99Nanos;
+    long sendLatencyP999Nanos;
+    long sendLatencyMaxNanos;
+    long fanOuts;
+    long fanOutP50;
+    long fanOutP99;
+    long fanOutMax;
+    long heldMessages;
+    int maxHeldQueueDepth;
+    long drainedHeldMessages;
+}
@@ -0,0 +1,93 @@
+package hu.perlaki.meltwater;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongConsumer;
+
+/**
+ * Delivers broadcast and group messages from a ForkJoinPool. The slots of the recipient set are split into disjoint
+ * ranges, so every recipient is visited by exactly one task, and the calling thread waits until all of them are done,
+ * so the set cannot change while it is read. Sets smaller than the threshold are visited on the calling thread.
+ */
+public class ParallelFanOut {
+
+    public static final ParallelFanOut SEQUENTIAL = new ParallelFanOut(1, Integer.MAX_VALUE);
+    public static final int DEFAULT_THRESHOLD = 10_000;
+
+    private static final int MIN_CHUNK_SLOTS = 1024;
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ParallelFanOut(int parallelism, int threshold) {
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.threshold = threshold;
+    }
+
+    public void forEach(PhoneNumberSet recipients, LongConsumer action) {
+        forEachSlotRange(recipients.size(), recipients.slots(),
+                (fromSlot, toSlot) -> recipients.forEachEncoded(fromSlot, toSlot, action));
+    }
+
+    /**
+     * Visits the numbers in the given slots of the set, e.g. the recipients of several targets resolved to slots.
+     * The slots must not change until the call returns.
+     */
+    public void forEach(PhoneNumberSet numbers, BitSet slots, int recipients, LongConsumer action) {
+        forEachSlotRange(recipients, numbers.slots(), (fromSlot, toSlot) -> {
+            for (int slot = slots.nextSetBit(fromSlot); slot >= 0 && slot < toSlot; slot = slots.nextSetBit(slot + 1)) {
+                action.accept(numbers.encodedAt(slot));
+            }
+        });
+    }
+
+    public void close() {
+        if(pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private void forEachSlotRange(int recipients, int slots, SlotRange slotRange) {
+        if(pool == null || recipients < threshold) {
+            slotRange.visit(0, slots);
+            return;
+        }
+
+        int chunkSlots = Math.max(MIN_CHUNK_SLOTS, slots / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        pool.invoke(new FanOutTask(slotRange, 0, slots, chunkSlots));
+    }
+
+    private interface SlotRange {
+        void visit(int fromSlot, int toSlot);
+    }
+
+    private static class FanOutTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient SlotRange slotRange;
+        private final int fromSlot;
+        private final int toSlot;
+        private final int chunkSlots;
+
+        FanOutTask(SlotRange slotRange, int fromSlot, int toSlot, int chunkSlots) {
+            this.slotRange = slotRange;
+            this.fromSlot = fromSlot;
+            this.toSlot = toSlot;
+            this.chunkSlots = chunkSlots;
+        }
+
+        @Override
+        protected void compute() {
+            if(toSlot - fromSlot <= chunkSlots) {
+                slotRange.visit(fromSlot, toSlot);
+                return;
+            }
+
+            int middleSlot = (fromSlot + toSlot) >>> 1;
+            invokeAll(new FanOutTask(slotRange, fromSlot, middleSlot, chunkSlots),
+                    new FanOutTask(slotRange, middleSlot, toSlot, chunkSlots));
+        }
+    }
+}
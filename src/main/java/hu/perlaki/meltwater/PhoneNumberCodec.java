@@ -0,0 +1,156 @@
+package hu.perlaki.meltwater;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs a phone number of an optional leading '+' and at most 17 digits into a positive long: bit 62 is set when
+ * there is no plus sign, bits 5-61 hold the digits left-aligned to 17 places and the lowest 5 bits hold the number
+ * of digits, so leading zeros survive and the numeric order of the encoded values is the lexicographic order of the
+ * strings. A prefix therefore covers a contiguous range of encoded values.
+ */
+public final class PhoneNumberCodec {
+
+    public static final int MAX_DIGITS = 17;
+
+    private static final long NO_PLUS = 1L << 62;
+    private static final int DIGIT_COUNT_BITS = 5;
+    private static final long DIGIT_COUNT_MASK = (1L << DIGIT_COUNT_BITS) - 1;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private PhoneNumberCodec() {
+    }
+
+    public static long encode(String phoneNumber) {
+        long encoded = tryEncode(phoneNumber);
+
+        if(encoded == 0) {
+            throw new RuntimeException("Phone number must be an optional '+' followed by at most "
+                    + MAX_DIGITS + " digits: " + phoneNumber);
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns 0, which is never a valid encoding, if the phone number cannot be encoded.
+     */
+    public static long tryEncode(String phoneNumber) {
+        boolean plus = phoneNumber.startsWith("+");
+        int from = plus ? 1 : 0;
+        int digits = phoneNumber.length() - from;
+
+        if(digits > MAX_DIGITS || digits == 0) {
+            return 0;
+        }
+
+        long value = 0;
+        for (int i = from; i < phoneNumber.length(); i++) {
+            char digit = phoneNumber.charAt(i);
+            if(digit < '0' || digit > '9') {
+                return 0;
+            }
+            value = value * 10 + (digit - '0');
+        }
+
+        return (plus ? 0 : NO_PLUS) | (value * POWERS_OF_TEN[MAX_DIGITS - digits]) << DIGIT_COUNT_BITS | digits;
+    }
+
+    public static String decode(long encoded) {
+        char[] chars = new char[length(encoded)];
+        long value = digits(encoded) / POWERS_OF_TEN[MAX_DIGITS - digitCount(encoded)];
+
+        for (int i = chars.length - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        if(hasPlus(encoded)) {
+            chars[0] = '+';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Writes the phone number as ASCII into the buffer without creating a string.
+     */
+    public static void put(ByteBuffer target, long encoded) {
+        int start = target.position();
+        int length = length(encoded);
+        long value = digits(encoded) / POWERS_OF_TEN[MAX_DIGITS - digitCount(encoded)];
+
+        for (int i = length - 1; i >= 0; i--) {
+            target.put(start + i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        if(hasPlus(encoded)) {
+            target.put(start, (byte) '+');
+        }
+        target.position(start + length);
+    }
+
+    public static int length(long encoded) {
+        return digitCount(encoded) + (hasPlus(encoded) ? 1 : 0);
+    }
+
+    public static char charAt(long encoded, int index) {
+        if(hasPlus(encoded)) {
+            if(index == 0) {
+                return '+';
+            }
+            index--;
+        }
+        return (char) ('0' + digits(encoded) / POWERS_OF_TEN[MAX_DIGITS - 1 - index] % 10);
+    }
+
+    public static Prefix prefix(String trimmedPhonePattern) {
+        if(trimmedPhonePattern.isEmpty()) {
+            return new Prefix(0, Long.MAX_VALUE, 0);
+        } else if(trimmedPhonePattern.equals("+")) {
+            return new Prefix(0, NO_PLUS, 0);
+        }
+
+        long start = tryEncode(trimmedPhonePattern);
+        if(start == 0) {
+            return new Prefix(0, 0, 0);
+        }
+
+        int digits = digitCount(start);
+        start &= ~DIGIT_COUNT_MASK;
+        long end = start + (POWERS_OF_TEN[MAX_DIGITS - digits] << DIGIT_COUNT_BITS);
+        return new Prefix(start, end, digits);
+    }
+
+    private static boolean hasPlus(long encoded) {
+        return (encoded & NO_PLUS) == 0;
+    }
+
+    private static int digitCount(long encoded) {
+        return (int) (encoded & DIGIT_COUNT_MASK);
+    }
+
+    private static long digits(long encoded) {
+        return (encoded & ~NO_PLUS) >>> DIGIT_COUNT_BITS;
+    }
+
+    public static final class Prefix {
+        private final long start;
+        private final long end;
+        private final int digits;
+
+        private Prefix(long start, long end, int digits) {
+            this.start = start;
+            this.end = end;
+            this.digits = digits;
+        }
+
+        public boolean matches(long encodedPhoneNumber) {
+            return encodedPhoneNumber >= start && encodedPhoneNumber < end
+                    && digitCount(encodedPhoneNumber) >= digits;
+        }
+    }
+}
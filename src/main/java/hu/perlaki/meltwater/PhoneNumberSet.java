@@ -0,0 +1,217 @@
+package hu.perlaki.meltwater;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing set of phone numbers encoded by {@link PhoneNumberCodec}, kept in a single long array with
+ * linear probing. The {@code Set<String>} methods encode and decode at the boundary, the hot paths use the
+ * primitive ones.
+ */
+public class PhoneNumberSet extends AbstractSet<String> {
+
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] table;
+    private int mask;
+    private int size;
+
+    public PhoneNumberSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public PhoneNumberSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public boolean addEncoded(long phoneNumber) {
+        if(phoneNumber == EMPTY) {
+            throw new RuntimeException("Phone number is not encoded");
+        }
+        if(containsEncoded(phoneNumber)) {
+            return false;
+        }
+        if(size >= maxSize()) {
+            allocate(table.length * 2);
+        }
+
+        place(phoneNumber);
+        size++;
+        return true;
+    }
+
+    public boolean containsEncoded(long phoneNumber) {
+        return indexOf(phoneNumber) >= 0;
+    }
+
+    public boolean removeEncoded(long phoneNumber) {
+        int gap = indexOf(phoneNumber);
+        if(gap < 0) {
+            return false;
+        }
+
+        // backward shift deletion keeps every probe sequence unbroken without tombstones
+        for (int slot = (gap + 1) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = slotOf(table[slot]);
+            if(((slot - home) & mask) >= ((slot - gap) & mask)) {
+                table[gap] = table[slot];
+                gap = slot;
+            }
+        }
+
+        table[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public void forEachEncoded(LongConsumer action) {
+        forEachEncoded(0, table.length, action);
+    }
+
+    /**
+     * Visits the phone numbers stored in the table slots {@code [fromSlot, toSlot)}, disjoint slot ranges visit
+     * disjoint phone numbers.
+     */
+    public void forEachEncoded(int fromSlot, int toSlot, LongConsumer action) {
+        long[] table = this.table;
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            if(table[slot] != EMPTY) {
+                action.accept(table[slot]);
+            }
+        }
+    }
+
+    public int slots() {
+        return table.length;
+    }
+
+    /**
+     * Returns the table slot of the phone number or -1, valid until the set is modified.
+     */
+    public int slotOfEncoded(long phoneNumber) {
+        return indexOf(phoneNumber);
+    }
+
+    public long encodedAt(int slot) {
+        return table[slot];
+    }
+
+    @Override
+    public boolean add(String phoneNumber) {
+        return addEncoded(PhoneNumberCodec.encode(phoneNumber));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && containsEncoded(PhoneNumberCodec.tryEncode((String) o));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof String && removeEncoded(PhoneNumberCodec.tryEncode((String) o));
+    }
+
+    @Override
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = advance(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < table.length;
+            }
+
+            @Override
+            public String next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                String phoneNumber = PhoneNumberCodec.decode(table[next]);
+                next = advance(next + 1);
+                return phoneNumber;
+            }
+
+            private int advance(int from) {
+                while(from < table.length && table[from] == EMPTY) {
+                    from++;
+                }
+                return from;
+            }
+        };
+    }
+
+    private int indexOf(long phoneNumber) {
+        if(phoneNumber == EMPTY) {
+            return -1;
+        }
+
+        for (int slot = slotOf(phoneNumber); table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if(table[slot] == phoneNumber) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void allocate(int capacity) {
+        long[] oldTable = table;
+
+        table = new long[capacity];
+        mask = capacity - 1;
+
+        if(oldTable != null && capacity > oldTable.length) {
+            for (long phoneNumber : oldTable) {
+                if(phoneNumber != EMPTY) {
+                    place(phoneNumber);
+                }
+            }
+        } else {
+            size = 0;
+        }
+    }
+
+    private void place(long phoneNumber) {
+        int slot = slotOf(phoneNumber);
+        while(table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = phoneNumber;
+    }
+
+    private int maxSize() {
+        return table.length / 4 * 3;
+    }
+
+    private int slotOf(long phoneNumber) {
+        return (int) mix(phoneNumber) & mask;
+    }
+
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while(capacity / 4 * 3 <= expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+}
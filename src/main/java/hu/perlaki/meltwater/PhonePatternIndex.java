@@ -0,0 +1,68 @@
+package hu.perlaki.meltwater;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class PhonePatternIndex {
+
+    private final Node root = new Node();
+
+    public void add(String trimmedPhonePattern, String groupIdentifier) {
+        Node node = root;
+        for (int i = 0; i < trimmedPhonePattern.length(); i++) {
+            node = node.children.computeIfAbsent(trimmedPhonePattern.charAt(i), key -> new Node());
+        }
+
+        if(!node.groupIdentifiers.contains(groupIdentifier)) {
+            node.groupIdentifiers.add(groupIdentifier);
+        }
+    }
+
+    public void remove(String trimmedPhonePattern, String groupIdentifier) {
+        remove(root, trimmedPhonePattern, 0, groupIdentifier);
+    }
+
+    public void forEachMatching(String phoneNumber, Consumer<String> action) {
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            for (String groupIdentifier : node.groupIdentifiers) {
+                action.accept(groupIdentifier);
+            }
+            node = i < phoneNumber.length() ? node.children.get(phoneNumber.charAt(i)) : null;
+        }
+    }
+
+    public void forEachMatching(long encodedPhoneNumber, Consumer<String> action) {
+        int length = PhoneNumberCodec.length(encodedPhoneNumber);
+
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            for (String groupIdentifier : node.groupIdentifiers) {
+                action.accept(groupIdentifier);
+            }
+            node = i < length ? node.children.get(PhoneNumberCodec.charAt(encodedPhoneNumber, i)) : null;
+        }
+    }
+
+    private static boolean remove(Node node, String trimmedPhonePattern, int depth, String groupIdentifier) {
+        if(depth == trimmedPhonePattern.length()) {
+            node.groupIdentifiers.remove(groupIdentifier);
+        } else {
+            char key = trimmedPhonePattern.charAt(depth);
+            Node child = node.children.get(key);
+            if(child != null && remove(child, trimmedPhonePattern, depth + 1, groupIdentifier)) {
+                node.children.remove(key);
+            }
+        }
+
+        return node.groupIdentifiers.isEmpty() && node.children.isEmpty();
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<String> groupIdentifiers = new ArrayList<>(1);
+    }
+}
@@ -0,0 +1,140 @@
+package hu.perlaki.meltwater;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Single-producer single-consumer ring of preallocated, reused event slots. The producer fills the slot returned by
+ * {@link #claim()} and makes it visible with {@link #publish()}; the consumer hands every published slot to a handler
+ * in {@link #drain(Consumer)} and releases the whole batch at once. The two threads only share a published and a
+ * consumed sequence, each on its own cache line, and both keep a cached copy of the other's sequence, so they only
+ * read it when the cached value says the ring is full or empty.
+ * <p>
+ * {@link #close()} tells the consumer that nothing more will be published, {@link #halt()} tells the producer that
+ * nothing more will be consumed.
+ */
+public class RingBuffer<E> {
+
+    private final Object[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final Sequence published = new Sequence();
+    private final Sequence consumed = new Sequence();
+    private volatile boolean closed;
+    private volatile boolean halted;
+
+    // only used by the producer
+    private long cachedConsumed = -1;
+    // only used by the consumer
+    private long cachedPublished = -1;
+
+    public RingBuffer(int capacity, Supplier<E> eventFactory, WaitStrategy waitStrategy) {
+        if(Integer.bitCount(capacity) != 1) {
+            throw new RuntimeException("The capacity of a ring buffer has to be a power of two: " + capacity);
+        }
+
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = eventFactory.get();
+        }
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the next slot to fill, waiting while the ring is full. Claiming again without publishing returns the
+     * same slot.
+     */
+    @SuppressWarnings("unchecked")
+    public E claim() {
+        long next = published.value + 1;
+        while(next - slots.length > cachedConsumed) {
+            cachedConsumed = consumed.value;
+            if(next - slots.length > cachedConsumed) {
+                if(halted) {
+                    throw new RuntimeException("The consumer of the ring buffer has stopped");
+                }
+                waitStrategy.idle();
+            }
+        }
+        return (E) slots[(int) next & mask];
+    }
+
+    public void publish() {
+        published.lazySet(published.value + 1);
+    }
+
+    /**
+     * Hands every published event to the handler and returns their number. The slots are released after the last
+     * one, so the handler must not keep a reference to them.
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<E> handler) {
+        long next = consumed.value + 1;
+        if(next > cachedPublished) {
+            cachedPublished = published.value;
+            if(next > cachedPublished) {
+                return 0;
+            }
+        }
+
+        long last = cachedPublished;
+        for (long sequence = next; sequence <= last; sequence++) {
+            handler.accept((E) slots[(int) sequence & mask]);
+        }
+        consumed.lazySet(last);
+        return (int) (last - next + 1);
+    }
+
+    /**
+     * Drains the ring until it is closed and empty, idling with the wait strategy in between.
+     */
+    public void consume(Consumer<E> handler) {
+        while(true) {
+            if(drain(handler) == 0) {
+                if(closed && drain(handler) == 0) {
+                    return;
+                }
+                waitStrategy.idle();
+            }
+        }
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    public void halt() {
+        halted = true;
+    }
+
+    private static class LeftPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class SequenceValue extends LeftPadding {
+        protected volatile long value = -1;
+    }
+
+    /**
+     * A volatile long padded on both sides, so the producer's and the consumer's sequence never share a cache line.
+     */
+    private static class Sequence extends SequenceValue {
+        private static final AtomicLongFieldUpdater<SequenceValue> VALUE =
+                AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        /**
+         * Ordered store, only the owning thread writes the sequence.
+         */
+        void lazySet(long newValue) {
+            VALUE.lazySet(this, newValue);
+        }
+    }
+}
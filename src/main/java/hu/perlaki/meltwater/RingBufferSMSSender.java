@@ -0,0 +1,107 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands the messages over to the transport on a sender thread through a {@link RingBuffer} of reused delivery slots,
+ * in the order they were sent. Broadcast and group deliveries keep their shared {@link EncodedMessage}, so fanning
+ * out does not allocate per receiver either.
+ * <p>
+ * The ring has a single producer: only one thread may send at a time, e.g. the thread owning SMSCenter.
+ */
+@Slf4j
+public class RingBufferSMSSender implements FanOutSMSSender {
+
+    private final SMSSender transport;
+    private final FanOutSMSSender fanOutTransport;
+    private final RingBuffer<Delivery> deliveries;
+    private final Thread sender;
+    private volatile RuntimeException failure;
+
+    public RingBufferSMSSender(SMSSender transport, int capacity, WaitStrategy waitStrategy) {
+        this.transport = transport;
+        this.fanOutTransport = transport instanceof FanOutSMSSender ? (FanOutSMSSender) transport : null;
+        this.deliveries = new RingBuffer<>(capacity, Delivery::new, waitStrategy);
+
+        sender = new Thread(this::run, "sms-sender-ring");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        Delivery delivery = claim();
+        delivery.senderPhoneNumber = senderPhoneNumber;
+        delivery.receiverPhoneNumber = receiverPhoneNumber;
+        delivery.message = message;
+        deliveries.publish();
+    }
+
+    @Override
+    public void send(EncodedMessage message, long receiverPhoneNumber) {
+        Delivery delivery = claim();
+        delivery.encodedMessage = message;
+        delivery.encodedReceiverPhoneNumber = receiverPhoneNumber;
+        deliveries.publish();
+    }
+
+    private Delivery claim() {
+        if(failure != null) {
+            throw new RuntimeException("The sender thread has stopped", failure);
+        }
+        return deliveries.claim();
+    }
+
+    /**
+     * Waits until every sent message is handed over, then closes the transport.
+     */
+    @Override
+    public void close() {
+        deliveries.close();
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while draining the delivery ring", e);
+            return;
+        }
+        transport.close();
+    }
+
+    private void run() {
+        try {
+            deliveries.consume(this::deliver);
+        } catch (RuntimeException e) {
+            log.error("The sender thread has stopped", e);
+            failure = e;
+            deliveries.halt();
+        }
+    }
+
+    private void deliver(Delivery delivery) {
+        if(delivery.encodedMessage == null) {
+            transport.send(delivery.senderPhoneNumber, delivery.receiverPhoneNumber, delivery.message);
+        } else if(fanOutTransport != null) {
+            fanOutTransport.send(delivery.encodedMessage, delivery.encodedReceiverPhoneNumber);
+        } else {
+            transport.send(delivery.encodedMessage.getSenderPhoneNumber(),
+                    PhoneNumberCodec.decode(delivery.encodedReceiverPhoneNumber), delivery.encodedMessage.getMessage());
+        }
+        delivery.clear();
+    }
+
+    private static class Delivery {
+        private String senderPhoneNumber;
+        private String receiverPhoneNumber;
+        private String message;
+        private EncodedMessage encodedMessage;
+        private long encodedReceiverPhoneNumber;
+
+        void clear() {
+            senderPhoneNumber = null;
+            receiverPhoneNumber = null;
+            message = null;
+            encodedMessage = null;
+        }
+    }
+}
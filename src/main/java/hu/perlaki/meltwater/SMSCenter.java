@@ -1,129 +1,414 @@
 package hu.perlaki.meltwater;
 
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-
 import java.util.*;
+import java.util.function.LongConsumer;
 
 import static java.util.stream.Collectors.toList;
 
-@Slf4j
-@RequiredArgsConstructor
-public class SMSCenter {
+public class SMSCenter implements HandleSMSService {
 
-    protected Set<String> subscribedNumbers = new HashSet<>();
-    protected Map<String, String> registeredNumbers = new HashMap<>();
-    protected Map<String, List<HeldMessage>> heldMessages = new HashMap<>();
+    protected IdentifierRegistry registeredNumbers = new IdentifierRegistry();
+    protected PhoneNumberSet subscribedNumbers = new SubscribedNumberSet(registeredNumbers);
     protected Map<String, List<String>> groups = new HashMap<>();
+    protected Map<String, PhoneNumberSet> groupMembers = new HashMap<>();
+    protected PhonePatternIndex groupPatterns = new PhonePatternIndex();
+
+    protected final HeldMessageStore heldMessages;
 
     private final SMSSender smsSender;
+    private StateJournal journal = StateJournal.NONE;
+    private SMSMetrics metrics = SMSMetrics.NONE;
+    private AuditTrail auditTrail = AuditTrail.LOG;
+    private ParallelFanOut fanOut = ParallelFanOut.SEQUENTIAL;
+    private final BitSet recipientSlots = new BitSet();
+
+    public SMSCenter(SMSSender smsSender) {
+        this(smsSender, new BoundedHeldMessageStore());
+    }
+
+    public SMSCenter(SMSSender smsSender, HeldMessageStore heldMessages) {
+        this.smsSender = smsSender;
+        this.heldMessages = heldMessages;
+    }
+
+    public void setJournal(StateJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void setMetrics(SMSMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void setAuditTrail(AuditTrail auditTrail) {
+        this.auditTrail = auditTrail;
+    }
+
+    /**
+     * The SMSSender has to be thread safe when the fan-out is parallel. The fan-out only scales as far as the sender
+     * does: {@link BufferedSMSSender} and the console output take a single lock per delivery, so with them the
+     * deliveries are serialized again and the parallel fan-out mostly adds overhead.
+     */
+    public void setFanOut(ParallelFanOut fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    @Override
+    public IdentifierRegistry getIdentifierRegistry() {
+        return registeredNumbers;
+    }
 
+    @Override
     public void register(String identifier, String phoneNumber) {
-        log.info("Registering identifier: {} with phoneNumber: {}", identifier, phoneNumber);
+        auditTrail.register(identifier, phoneNumber);
 
         if (registeredNumbers.containsKey(identifier)) {
             throw new RuntimeException("An identifier cannot be registered in the system more than one time");
         }
 
-        registeredNumbers.put(identifier, phoneNumber);
+        registeredNumbers.register(identifier, PhoneNumberCodec.encode(phoneNumber));
+        journal.register(identifier, phoneNumber);
     }
 
+    @Override
     public void subscribe(String identifier) {
-        log.info("Subscribing identifier: {}", identifier);
+        auditTrail.subscribe(identifier);
+
+        int handle = registeredNumbers.handleOf(identifier);
+
+        if(handle != IdentifierRegistry.NO_HANDLE) {
+            subscribeNumber(registeredNumbers.phoneNumberOf(handle));
+        }
+    }
+
+    public void subscribeNumber(String phoneNumber) {
+        subscribeNumber(PhoneNumberCodec.encode(phoneNumber));
+    }
 
-        String phoneNumber = registeredNumbers.get(identifier);
+    private void subscribeNumber(long phoneNumber) {
+        String decodedPhoneNumber = PhoneNumberCodec.decode(phoneNumber);
 
-        if(phoneNumber != null) {
-            subscribedNumbers.add(phoneNumber);
-            sendHeldMessage(phoneNumber);
+        if(subscribedNumbers.addEncoded(phoneNumber)) {
+            joinGroups(phoneNumber);
+            journal.subscribe(decodedPhoneNumber);
         }
+        sendHeldMessage(decodedPhoneNumber);
     }
 
+    @Override
     public void unsubscribe(String identifier) {
-        log.info("Unsubscribing identifier: {}", identifier);
+        auditTrail.unsubscribe(identifier);
 
-        String phoneNumber = registeredNumbers.get(identifier);
+        int handle = registeredNumbers.handleOf(identifier);
 
-        subscribedNumbers.remove(phoneNumber);
+        if(handle != IdentifierRegistry.NO_HANDLE) {
+            unsubscribeNumber(registeredNumbers.phoneNumberOf(handle));
+        }
     }
 
+    public void unsubscribeNumber(String phoneNumber) {
+        unsubscribeNumber(PhoneNumberCodec.encode(phoneNumber));
+    }
+
+    private void unsubscribeNumber(long phoneNumber) {
+        if(subscribedNumbers.removeEncoded(phoneNumber)) {
+            leaveGroups(phoneNumber);
+            journal.unsubscribe(PhoneNumberCodec.decode(phoneNumber));
+        }
+    }
+
+    @Override
     public void createGroup(String groupIdentifier, List<String> phonePatterns) {
-        log.info("Creating group with identifier: {}, patterns: {}",
-                groupIdentifier, String.join(",", phonePatterns));
+        auditTrail.createGroup(groupIdentifier, phonePatterns);
 
         final List<String> trimmedPhonePatterns = phonePatterns
                 .stream()
                 .map(pp -> pp.replace("*", ""))
                 .collect(toList());
 
+        defineGroup(groupIdentifier, trimmedPhonePatterns);
+        journal.createGroup(groupIdentifier, trimmedPhonePatterns);
+    }
+
+    void defineGroup(String groupIdentifier, List<String> trimmedPhonePatterns) {
+        removeGroup(groupIdentifier);
+
+        PhoneNumberCodec.Prefix[] prefixes = trimmedPhonePatterns
+                .stream()
+                .map(PhoneNumberCodec::prefix)
+                .toArray(PhoneNumberCodec.Prefix[]::new);
+
+        PhoneNumberSet members = new PhoneNumberSet();
+        subscribedNumbers.forEachEncoded(phoneNumber -> {
+            for (PhoneNumberCodec.Prefix prefix : prefixes) {
+                if(prefix.matches(phoneNumber)) {
+                    members.addEncoded(phoneNumber);
+                    return;
+                }
+            }
+        });
+        trimmedPhonePatterns.forEach(phonePattern -> groupPatterns.add(phonePattern, groupIdentifier));
+
         groups.put(groupIdentifier, trimmedPhonePatterns);
+        groupMembers.put(groupIdentifier, members);
     }
 
+    @Override
     public void sendMessage(String senderIdentifier, String receiverIdentifier, String message) {
-        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
-        String receiverPhoneNumber = registeredNumbers.get(receiverIdentifier);
+        sendMessage(registeredNumbers.handleOf(senderIdentifier), registeredNumbers.handleOf(receiverIdentifier), message);
+    }
 
-        if(senderPhoneNumber == null) {
-            throw new RuntimeException("Sender is not registered!");
-        } else if (receiverPhoneNumber == null) {
-            throw new RuntimeException("Receiver is not registered!");
-        } else if (!subscribedNumbers.contains(senderPhoneNumber)) {
-            throw new RuntimeException("Sender is not subscribed!");
-        }
+    @Override
+    public void sendMessage(int senderHandle, int receiverHandle, String message) {
+        checkDirectMessage(senderHandle, receiverHandle);
+
+        String senderPhoneNumber = PhoneNumberCodec.decode(registeredNumbers.phoneNumberOf(senderHandle));
+        String receiverPhoneNumber = PhoneNumberCodec.decode(registeredNumbers.phoneNumberOf(receiverHandle));
 
-        if(!subscribedNumbers.contains(receiverPhoneNumber)) {
+        if(!registeredNumbers.isSubscribed(receiverHandle)) {
             holdMessage(message, senderPhoneNumber, receiverPhoneNumber);
         } else {
             smsSender.send(senderPhoneNumber, receiverPhoneNumber, message);
         }
     }
 
-    public void sendBroadcast(String senderIdentifier, String message) {
-        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
+    @Override
+    public void sendToTargets(String senderIdentifier, List<String> targets, String message) {
+        if(targets.size() == 1) {
+            HandleSMSService.super.sendToTargets(senderIdentifier, targets, message);
+        } else {
+            sendToTargets(registeredNumbers.handleOf(senderIdentifier), targets, null, message);
+        }
+    }
+
+    @Override
+    public void sendToTargets(Command command) {
+        int senderHandle = command.getIdentifierHandle();
+        if(senderHandle == IdentifierRegistry.NO_HANDLE && command.getIdentifier() != null) {
+            senderHandle = registeredNumbers.handleOf(command.getIdentifier());
+        }
+
+        List<String> targets = command.getTargets();
+        if(targets.size() == 1 && targets.get(0) == null) {
+            sendMessage(senderHandle, command.getTargetHandle(0), command.getMessage());
+        } else if(targets.size() == 1) {
+            HandleSMSService.super.sendToTargets(command.getIdentifier(), targets, command.getMessage());
+        } else {
+            sendToTargets(senderHandle, targets, command, command.getMessage());
+        }
+    }
+
+    /**
+     * Resolves every target into a set of slots of the subscribed numbers and the unsubscribed receivers before
+     * anything is sent, so a phone listed several times, directly or through groups, gets the message only once.
+     * Targets already resolved to handles are null in the list and their handles are taken from the command.
+     */
+    private void sendToTargets(int senderHandle, List<String> targets, Command command, String message) {
+        String senderPhoneNumber = senderHandle != IdentifierRegistry.NO_HANDLE
+                ? PhoneNumberCodec.decode(registeredNumbers.phoneNumberOf(senderHandle))
+                : null;
+        PhoneNumberSet heldReceivers = null;
+        boolean fannedOut = false;
+        boolean broadcast = false;
+        recipientSlots.clear();
+
+        for (int i = 0; i < targets.size(); i++) {
+            String target = targets.get(i);
+
+            if(target == null || target.startsWith("number")) {
+                int receiverHandle = target == null ? command.getTargetHandle(i) : registeredNumbers.handleOf(target);
+                checkDirectMessage(senderHandle, receiverHandle);
+
+                long receiverPhoneNumber = registeredNumbers.phoneNumberOf(receiverHandle);
+                int slot = subscribedNumbers.slotOfEncoded(receiverPhoneNumber);
+                if(slot >= 0) {
+                    recipientSlots.set(slot);
+                } else {
+                    if(heldReceivers == null) {
+                        heldReceivers = new PhoneNumberSet();
+                    }
+                    heldReceivers.addEncoded(receiverPhoneNumber);
+                }
+            } else if(target.startsWith("group")) {
+                PhoneNumberSet members = groupMembers.get(target);
+                if(members != null) {
+                    members.forEachEncoded(member -> {
+                        int slot = subscribedNumbers.slotOfEncoded(member);
+                        if(slot >= 0) {
+                            recipientSlots.set(slot);
+                        }
+                    });
+                }
+                fannedOut = true;
+            } else if(target.equals("broadcast")) {
+                broadcast = true;
+            }
+        }
+
+        if(heldReceivers != null) {
+            heldReceivers.forEachEncoded(receiverPhoneNumber ->
+                    holdMessage(message, senderPhoneNumber, PhoneNumberCodec.decode(receiverPhoneNumber)));
+        }
 
-        for (String receiverPhoneNumber : subscribedNumbers) {
+        if(broadcast) {
+            sendBroadcastFrom(senderPhoneNumber, message);
+            return;
+        }
+        LongConsumer delivery = deliveryOf(senderPhoneNumber, message);
+        if(fannedOut) {
+            int recipients = recipientSlots.cardinality();
+            metrics.messageFannedOut(recipients);
+            fanOut.forEach(subscribedNumbers, recipientSlots, recipients, delivery);
+        } else {
+            for (int slot = recipientSlots.nextSetBit(0); slot >= 0; slot = recipientSlots.nextSetBit(slot + 1)) {
+                delivery.accept(subscribedNumbers.encodedAt(slot));
+            }
+        }
+    }
+
+    public void deliverMessage(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        if(!subscribedNumbers.containsEncoded(PhoneNumberCodec.encode(receiverPhoneNumber))) {
+            holdMessage(message, senderPhoneNumber, receiverPhoneNumber);
+        } else {
             smsSender.send(senderPhoneNumber, receiverPhoneNumber, message);
         }
     }
 
+    @Override
+    public void sendBroadcast(String senderIdentifier, String message) {
+        sendBroadcastFrom(registeredNumbers.get(senderIdentifier), message);
+    }
+
+    public void sendBroadcastFrom(String senderPhoneNumber, String message) {
+        metrics.messageFannedOut(subscribedNumbers.size());
+
+        fanOut.forEach(subscribedNumbers, deliveryOf(senderPhoneNumber, message));
+    }
+
+    @Override
     public void sendGroupMessage(String senderIdentifier, String groupIdentifier, String message) {
-        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
-        List<String> phonePatterns = groups.get(groupIdentifier);
+        sendGroupMessageFrom(registeredNumbers.get(senderIdentifier), groupIdentifier, message);
+    }
 
-        if(phonePatterns == null) {
+    public void sendGroupMessageFrom(String senderPhoneNumber, String groupIdentifier, String message) {
+        PhoneNumberSet members = groupMembers.get(groupIdentifier);
+
+        if(members == null) {
             return;
         }
 
-        for (String subscribedNumber : subscribedNumbers) {
-            for (String phonePattern : phonePatterns) {
-                if(subscribedNumber.startsWith(phonePattern)) {
-                    smsSender.send(senderPhoneNumber, subscribedNumber, message);
-                    break;
-                }
-            }
+        metrics.messageFannedOut(members.size());
+        fanOut.forEach(members, deliveryOf(senderPhoneNumber, message));
+    }
+
+    void restoreSubscription(String phoneNumber) {
+        long encodedPhoneNumber = PhoneNumberCodec.encode(phoneNumber);
+
+        if(subscribedNumbers.addEncoded(encodedPhoneNumber)) {
+            joinGroups(encodedPhoneNumber);
+        }
+    }
+
+    @Override
+    public void close() {
+        auditTrail.close();
+        journal.close();
+        heldMessages.close();
+        fanOut.close();
+    }
+
+    private void removeGroup(String groupIdentifier) {
+        List<String> phonePatterns = groups.remove(groupIdentifier);
+        groupMembers.remove(groupIdentifier);
+
+        if(phonePatterns != null) {
+            phonePatterns.forEach(phonePattern -> groupPatterns.remove(phonePattern, groupIdentifier));
+        }
+    }
+
+    private void joinGroups(long phoneNumber) {
+        groupPatterns.forEachMatching(phoneNumber,
+                groupIdentifier -> groupMembers.get(groupIdentifier).addEncoded(phoneNumber));
+    }
+
+    private void leaveGroups(long phoneNumber) {
+        groupPatterns.forEachMatching(phoneNumber,
+                groupIdentifier -> groupMembers.get(groupIdentifier).removeEncoded(phoneNumber));
+    }
+
+    /**
+     * A FanOutSMSSender gets the sender and the message encoded once for all the receivers, any other sender gets
+     * the decoded receiver phone numbers.
+     */
+    private LongConsumer deliveryOf(String senderPhoneNumber, String message) {
+        if(smsSender instanceof FanOutSMSSender) {
+            FanOutSMSSender fanOutSender = (FanOutSMSSender) smsSender;
+            EncodedMessage encodedMessage = new EncodedMessage(senderPhoneNumber, message);
+            return receiverPhoneNumber -> fanOutSender.send(encodedMessage, receiverPhoneNumber);
+        }
+        return receiverPhoneNumber -> smsSender.send(senderPhoneNumber, PhoneNumberCodec.decode(receiverPhoneNumber), message);
+    }
+
+    private void checkDirectMessage(int senderHandle, int receiverHandle) {
+        if(senderHandle == IdentifierRegistry.NO_HANDLE) {
+            throw new RuntimeException("Sender is not registered!");
+        } else if (receiverHandle == IdentifierRegistry.NO_HANDLE) {
+            throw new RuntimeException("Receiver is not registered!");
+        } else if (!registeredNumbers.isSubscribed(senderHandle)) {
+            throw new RuntimeException("Sender is not subscribed!");
         }
     }
 
     private void holdMessage(String message, String senderPhoneNumber, String receiverPhoneNumber) {
         HeldMessage heldMessage = new HeldMessage(senderPhoneNumber, message);
 
-        List<HeldMessage> receiverHeldMessages = heldMessages.get(receiverPhoneNumber);
-        if(receiverHeldMessages != null) {
-            receiverHeldMessages.add(heldMessage);
-        } else {
-            receiverHeldMessages = new ArrayList<>();
-            receiverHeldMessages.add(heldMessage);
-            heldMessages.put(receiverPhoneNumber, receiverHeldMessages);
-        }
+        heldMessages.hold(receiverPhoneNumber, heldMessage);
+        journal.hold(receiverPhoneNumber, heldMessage);
     }
 
     private void sendHeldMessage(String receiverPhoneNumber) {
-        List<HeldMessage> receiverHeldMessages = heldMessages.get(receiverPhoneNumber);
+        List<HeldMessage> receiverHeldMessages = heldMessages.drain(receiverPhoneNumber);
+
+        if(!receiverHeldMessages.isEmpty()) {
+            journal.drain(receiverPhoneNumber);
+            metrics.heldMessagesDrained(receiverHeldMessages.size());
+        }
+
+        for (HeldMessage heldMessage : receiverHeldMessages) {
+            smsSender.send(heldMessage.getSenderPhoneNumber(), receiverPhoneNumber, heldMessage.getMessage());
+        }
+    }
+
+    private static class SubscribedNumberSet extends PhoneNumberSet {
+        private final IdentifierRegistry identifierRegistry;
 
-        if(receiverHeldMessages != null) {
-            for (HeldMessage heldMessage : receiverHeldMessages) {
-                smsSender.send(heldMessage.getSenderPhoneNumber(), receiverPhoneNumber, heldMessage.getMessage());
+        SubscribedNumberSet(IdentifierRegistry identifierRegistry) {
+            this.identifierRegistry = identifierRegistry;
+        }
+
+        @Override
+        public boolean addEncoded(long phoneNumber) {
+            if(!super.addEncoded(phoneNumber)) {
+                return false;
             }
+            identifierRegistry.setSubscribed(phoneNumber, true);
+            return true;
+        }
+
+        @Override
+        public boolean removeEncoded(long phoneNumber) {
+            if(!super.removeEncoded(phoneNumber)) {
+                return false;
+            }
+            identifierRegistry.setSubscribed(phoneNumber, false);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            forEachEncoded(phoneNumber -> identifierRegistry.setSubscribed(phoneNumber, false));
+            super.clear();
         }
     }
 }
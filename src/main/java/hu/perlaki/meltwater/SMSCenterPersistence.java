@@ -0,0 +1,479 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Every record is written to the log file as soon as the state change is applied, so it survives the JVM being
+ * killed. Surviving an operating system crash or power loss also needs {@code syncEachRecord}, which forces every
+ * record to the disk before the command returns, at the cost of a disk flush per state change.
+ */
+@Slf4j
+public class SMSCenterPersistence implements StateJournal {
+
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 100_000;
+
+    private static final int SNAPSHOT_MAGIC = 0x534D5353;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String LOG_PREFIX = "wal-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final byte REGISTER = 1;
+    private static final byte SUBSCRIBE = 2;
+    private static final byte UNSUBSCRIBE = 3;
+    private static final byte CREATE_GROUP = 4;
+    private static final byte HOLD = 5;
+    private static final byte DRAIN = 6;
+
+    private final Path directory;
+    private final SMSCenter smsCenter;
+    private final long snapshotInterval;
+    private final boolean syncEachRecord;
+
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+
+    private long sequence;
+    private long recordsSinceSnapshot;
+    private FileChannel writeAheadLog;
+
+    private SMSCenterPersistence(Path directory, SMSCenter smsCenter, long snapshotInterval, boolean syncEachRecord) {
+        this.directory = directory;
+        this.smsCenter = smsCenter;
+        this.snapshotInterval = snapshotInterval;
+        this.syncEachRecord = syncEachRecord;
+    }
+
+    public static SMSCenterPersistence open(Path directory, SMSCenter smsCenter, long snapshotInterval) {
+        return open(directory, smsCenter, snapshotInterval, false);
+    }
+
+    public static SMSCenterPersistence open(Path directory, SMSCenter smsCenter, long snapshotInterval,
+                                            boolean syncEachRecord) {
+        SMSCenterPersistence persistence = new SMSCenterPersistence(directory, smsCenter, snapshotInterval,
+                syncEachRecord);
+
+        try {
+            Files.createDirectories(directory);
+            persistence.recover();
+            persistence.writeAheadLog = persistence.openLog(persistence.sequence);
+        } catch (IOException e) {
+            throw new RuntimeException("The state of the SMS center could not be restored", e);
+        }
+
+        smsCenter.setJournal(persistence);
+        return persistence;
+    }
+
+    @Override
+    public void register(String identifier, String phoneNumber) {
+        try {
+            recordOutput.writeByte(REGISTER);
+            writeString(recordOutput, identifier);
+            writeString(recordOutput, phoneNumber);
+        } catch (IOException e) {
+            throw new RuntimeException("Record could not be encoded", e);
+        }
+        append();
+    }
+
+    @Override
+    public void subscribe(String phoneNumber) {
+        appendPhoneNumberRecord(SUBSCRIBE, phoneNumber);
+    }
+
+    @Override
+    public void unsubscribe(String phoneNumber) {
+        appendPhoneNumberRecord(UNSUBSCRIBE, phoneNumber);
+    }
+
+    @Override
+    public void createGroup(String groupIdentifier, List<String> trimmedPhonePatterns) {
+        try {
+            recordOutput.writeByte(CREATE_GROUP);
+            writeString(recordOutput, groupIdentifier);
+            writeStrings(recordOutput, trimmedPhonePatterns);
+        } catch (IOException e) {
+            throw new RuntimeException("Record could not be encoded", e);
+        }
+        append();
+    }
+
+    @Override
+    public void hold(String receiverPhoneNumber, HeldMessage heldMessage) {
+        try {
+            recordOutput.writeByte(HOLD);
+            writeString(recordOutput, receiverPhoneNumber);
+            writeString(recordOutput, heldMessage.getSenderPhoneNumber());
+            writeString(recordOutput, heldMessage.getMessage());
+        } catch (IOException e) {
+            throw new RuntimeException("Record could not be encoded", e);
+        }
+        append();
+    }
+
+    @Override
+    public void drain(String receiverPhoneNumber) {
+        appendPhoneNumberRecord(DRAIN, receiverPhoneNumber);
+    }
+
+    public void snapshot() {
+        long nextSequence = sequence + 1;
+        Path temporary = directory.resolve(SNAPSHOT_PREFIX + nextSequence + SNAPSHOT_SUFFIX + ".tmp");
+        FileChannel nextLog;
+        try {
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                writeSnapshot(output);
+                output.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, snapshotPath(nextSequence), StandardCopyOption.ATOMIC_MOVE);
+            nextLog = openLog(nextSequence);
+        } catch (IOException e) {
+            // the current snapshot and log stay in use, they still hold every applied change
+            deleteQuietly(temporary);
+            deleteQuietly(snapshotPath(nextSequence));
+            throw new RuntimeException("Snapshot could not be written", e);
+        }
+
+        try {
+            writeAheadLog.close();
+            Files.deleteIfExists(snapshotPath(sequence));
+            Files.deleteIfExists(logPath(sequence));
+        } catch (IOException e) {
+            log.warn("The files of snapshot {} could not be removed", sequence, e);
+        }
+        writeAheadLog = nextLog;
+        sequence = nextSequence;
+        recordsSinceSnapshot = 0;
+    }
+
+    @Override
+    public void close() {
+        smsCenter.setJournal(StateJournal.NONE);
+        try {
+            writeAheadLog.close();
+        } catch (IOException e) {
+            log.error("Error while closing the write-ahead log", e);
+        }
+    }
+
+    private void appendPhoneNumberRecord(byte type, String phoneNumber) {
+        try {
+            recordOutput.writeByte(type);
+            writeString(recordOutput, phoneNumber);
+        } catch (IOException e) {
+            throw new RuntimeException("Record could not be encoded", e);
+        }
+        append();
+    }
+
+    private void append() {
+        try {
+            int length = record.size() - RECORD_HEADER_SIZE;
+            crc.reset();
+            crc.update(record.bytes(), RECORD_HEADER_SIZE, length);
+            record.putHeader(length, (int) crc.getValue());
+
+            ByteBuffer buffer = record.toByteBuffer();
+            while(buffer.hasRemaining()) {
+                writeAheadLog.write(buffer);
+            }
+            if(syncEachRecord) {
+                writeAheadLog.force(false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Record could not be written to the write-ahead log", e);
+        } finally {
+            record.reset();
+        }
+
+        if(++recordsSinceSnapshot >= snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    private void recover() throws IOException {
+        long startTime = System.nanoTime();
+        sequence = latestSnapshotSequence();
+
+        if(sequence > 0) {
+            try(DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(snapshotPath(sequence)), 1 << 16))) {
+                readSnapshot(input);
+            }
+        }
+
+        long records = 0;
+        Path logPath = logPath(sequence);
+        if(Files.exists(logPath)) {
+            records = replay(logPath);
+        }
+        recordsSinceSnapshot = records;
+
+        log.info("Restored snapshot {} and {} log records in {} ms",
+                sequence, records, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    private long replay(Path logPath) throws IOException {
+        long records = 0;
+        long validLength = 0;
+        byte[] buffer = new byte[256];
+
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath), 1 << 16))) {
+            while(true) {
+                int length;
+                int checksum;
+                try {
+                    length = input.readInt();
+                    checksum = input.readInt();
+                    if(length < 0) {
+                        break;
+                    }
+                    if(buffer.length < length) {
+                        buffer = new byte[Math.max(length, buffer.length * 2)];
+                    }
+                    input.readFully(buffer, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                apply(new DataInputStream(new ByteArrayInputStream(buffer, 0, length)));
+                validLength += RECORD_HEADER_SIZE + length;
+                records++;
+            }
+        }
+
+        if(validLength < Files.size(logPath)) {
+            log.warn("Truncating the torn tail of {} at {} bytes", logPath, validLength);
+            try(FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return records;
+    }
+
+    private void apply(DataInputStream input) throws IOException {
+        byte type = input.readByte();
+
+        switch (type) {
+            case REGISTER:
+                smsCenter.registeredNumbers.put(readString(input), readString(input));
+                break;
+            case SUBSCRIBE:
+                smsCenter.restoreSubscription(readString(input));
+                break;
+            case UNSUBSCRIBE:
+                smsCenter.unsubscribeNumber(readString(input));
+                break;
+            case CREATE_GROUP:
+                smsCenter.defineGroup(readString(input), readStrings(input));
+                break;
+            case HOLD:
+                String receiverPhoneNumber = readString(input);
+                smsCenter.heldMessages.hold(receiverPhoneNumber, new HeldMessage(readString(input), readString(input)));
+                break;
+            case DRAIN:
+                smsCenter.heldMessages.drain(readString(input));
+                break;
+            default:
+                throw new RuntimeException("Unknown write-ahead log record type: " + type);
+        }
+    }
+
+    private void writeSnapshot(DataOutputStream output) throws IOException {
+        output.writeInt(SNAPSHOT_MAGIC);
+        output.writeInt(SNAPSHOT_VERSION);
+
+        output.writeInt(smsCenter.registeredNumbers.size());
+        for (Map.Entry<String, String> registration : smsCenter.registeredNumbers.entrySet()) {
+            writeString(output, registration.getKey());
+            writeString(output, registration.getValue());
+        }
+
+        output.writeInt(smsCenter.groups.size());
+        for (Map.Entry<String, List<String>> group : smsCenter.groups.entrySet()) {
+            writeString(output, group.getKey());
+            writeStrings(output, group.getValue());
+        }
+
+        output.writeInt(smsCenter.subscribedNumbers.size());
+        for (String phoneNumber : smsCenter.subscribedNumbers) {
+            writeString(output, phoneNumber);
+        }
+
+        IOException[] failure = new IOException[1];
+        smsCenter.heldMessages.forEach((receiverPhoneNumber, heldMessage) -> {
+            try {
+                output.writeBoolean(true);
+                writeString(output, receiverPhoneNumber);
+                writeString(output, heldMessage.getSenderPhoneNumber());
+                writeString(output, heldMessage.getMessage());
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if(failure[0] != null) {
+            throw failure[0];
+        }
+        output.writeBoolean(false);
+    }
+
+    private void readSnapshot(DataInputStream input) throws IOException {
+        if(input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Unknown snapshot format");
+        }
+
+        for (int i = input.readInt(); i > 0; i--) {
+            smsCenter.registeredNumbers.put(readString(input), readString(input));
+        }
+        for (int i = input.readInt(); i > 0; i--) {
+            smsCenter.defineGroup(readString(input), readStrings(input));
+        }
+        for (int i = input.readInt(); i > 0; i--) {
+            smsCenter.restoreSubscription(readString(input));
+        }
+
+        while(input.readBoolean()) {
+            String receiverPhoneNumber = readString(input);
+            smsCenter.heldMessages.hold(receiverPhoneNumber, new HeldMessage(readString(input), readString(input)));
+        }
+    }
+
+    private FileChannel openLog(long sequence) throws IOException {
+        return FileChannel.open(logPath(sequence), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("{} could not be removed", path, e);
+        }
+    }
+
+    private long latestSnapshotSequence() throws IOException {
+        long latest = 0;
+        try(DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshot : snapshots) {
+                String fileName = snapshot.getFileName().toString();
+                latest = Math.max(latest, Long.parseLong(
+                        fileName.substring(SNAPSHOT_PREFIX.length(), fileName.length() - SNAPSHOT_SUFFIX.length())));
+            }
+        }
+        return latest;
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(SNAPSHOT_PREFIX + sequence + SNAPSHOT_SUFFIX);
+    }
+
+    private Path logPath(long sequence) {
+        return directory.resolve(LOG_PREFIX + sequence + LOG_SUFFIX);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> values) throws IOException {
+        output.writeInt(values.size());
+        for (String value : values) {
+            writeString(output, value);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(DataInputStream input) throws IOException {
+        int size = input.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(input));
+        }
+        return values;
+    }
+
+    /**
+     * Collects a record behind the room for its header, so the whole record is written to the log at once.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+
+        private ByteBuffer wrapped;
+
+        RecordBuffer() {
+            super(256);
+            count = RECORD_HEADER_SIZE;
+        }
+
+        @Override
+        public synchronized void reset() {
+            count = RECORD_HEADER_SIZE;
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        void putHeader(int length, int checksum) {
+            putInt(0, length);
+            putInt(Integer.BYTES, checksum);
+        }
+
+        ByteBuffer toByteBuffer() {
+            if(wrapped == null || wrapped.array() != buf) {
+                wrapped = ByteBuffer.wrap(buf);
+            }
+            wrapped.limit(count).position(0);
+            return wrapped;
+        }
+
+        private void putInt(int offset, int value) {
+            buf[offset] = (byte) (value >>> 24);
+            buf[offset + 1] = (byte) (value >>> 16);
+            buf[offset + 2] = (byte) (value >>> 8);
+            buf[offset + 3] = (byte) value;
+        }
+    }
+}
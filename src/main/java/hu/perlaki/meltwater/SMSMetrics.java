@@ -0,0 +1,19 @@
+package hu.perlaki.meltwater;
+
+public interface SMSMetrics {
+
+    SMSMetrics NONE = new SMSMetrics() {
+    };
+
+    default void commandProcessed(Command.Type type) {
+    }
+
+    default void messageSent(long elapsedNanos) {
+    }
+
+    default void messageFannedOut(int receivers) {
+    }
+
+    default void heldMessagesDrained(int heldMessages) {
+    }
+}
@@ -0,0 +1,30 @@
+package hu.perlaki.meltwater;
+
+import java.util.Map;
+
+public interface SMSMetricsMXBean {
+
+    Map<String, Long> getProcessedCommands();
+
+    long getSentMessages();
+
+    long getSendLatencyP50Nanos();
+
+    long getSendLatencyP99Nanos();
+
+    long getSendLatencyP999Nanos();
+
+    long getSendLatencyMaxNanos();
+
+    long getFanOuts();
+
+    long getFanOutP99();
+
+    long getFanOutMax();
+
+    long getHeldMessages();
+
+    int getMaxHeldQueueDepth();
+
+    long getDrainedHeldMessages();
+}
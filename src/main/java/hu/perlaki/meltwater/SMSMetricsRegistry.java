@@ -0,0 +1,148 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+public class SMSMetricsRegistry implements SMSMetrics, SMSMetricsMXBean {
+
+    public static final String OBJECT_NAME = "hu.perlaki.meltwater:type=SMSMetrics";
+
+    private final LongAdder[] processedCommands = new LongAdder[Command.Type.values().length];
+    private final LogLinearHistogram sendLatency = new LogLinearHistogram();
+    private final LogLinearHistogram fanOut = new LogLinearHistogram();
+    private final LongAdder drainedHeldMessages = new LongAdder();
+    private final List<HeldMessageStore> heldMessageStores = new CopyOnWriteArrayList<>();
+
+    public SMSMetricsRegistry() {
+        for (int i = 0; i < processedCommands.length; i++) {
+            processedCommands[i] = new LongAdder();
+        }
+    }
+
+    public void addHeldMessageStore(HeldMessageStore heldMessageStore) {
+        heldMessageStores.add(heldMessageStore);
+    }
+
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            log.error("Metrics MBean could not be registered", e);
+        }
+    }
+
+    @Override
+    public void commandProcessed(Command.Type type) {
+        processedCommands[type.ordinal()].increment();
+    }
+
+    @Override
+    public void messageSent(long elapsedNanos) {
+        sendLatency.record(elapsedNanos);
+    }
+
+    @Override
+    public void messageFannedOut(int receivers) {
+        fanOut.record(receivers);
+    }
+
+    @Override
+    public void heldMessagesDrained(int heldMessages) {
+        drainedHeldMessages.add(heldMessages);
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<Command.Type, Long> commands = new EnumMap<>(Command.Type.class);
+        for (Command.Type type : Command.Type.values()) {
+            commands.put(type, processedCommands[type.ordinal()].sum());
+        }
+
+        return new MetricsSnapshot(System.currentTimeMillis(), commands,
+                sendLatency.count(), sendLatency.valueAtPercentile(50), sendLatency.valueAtPercentile(99),
+                sendLatency.valueAtPercentile(99.9), sendLatency.max(),
+                fanOut.count(), fanOut.valueAtPercentile(50), fanOut.valueAtPercentile(99), fanOut.max(),
+                getHeldMessages(), getMaxHeldQueueDepth(), drainedHeldMessages.sum());
+    }
+
+    @Override
+    public Map<String, Long> getProcessedCommands() {
+        Map<String, Long> commands = new LinkedHashMap<>();
+        for (Command.Type type : Command.Type.values()) {
+            commands.put(type.name(), processedCommands[type.ordinal()].sum());
+        }
+        return commands;
+    }
+
+    @Override
+    public long getSentMessages() {
+        return sendLatency.count();
+    }
+
+    @Override
+    public long getSendLatencyP50Nanos() {
+        return sendLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getSendLatencyP99Nanos() {
+        return sendLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getSendLatencyP999Nanos() {
+        return sendLatency.valueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getSendLatencyMaxNanos() {
+        return sendLatency.max();
+    }
+
+    @Override
+    public long getFanOuts() {
+        return fanOut.count();
+    }
+
+    @Override
+    public long getFanOutP99() {
+        return fanOut.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getFanOutMax() {
+        return fanOut.max();
+    }
+
+    @Override
+    public long getHeldMessages() {
+        long heldMessages = 0;
+        for (HeldMessageStore heldMessageStore : heldMessageStores) {
+            heldMessages += heldMessageStore.statistics().getHeldMessages();
+        }
+        return heldMessages;
+    }
+
+    @Override
+    public int getMaxHeldQueueDepth() {
+        int maxQueueDepth = 0;
+        for (HeldMessageStore heldMessageStore : heldMessageStores) {
+            maxQueueDepth = Math.max(maxQueueDepth, heldMessageStore.statistics().getMaxQueueDepth());
+        }
+        return maxQueueDepth;
+    }
+
+    @Override
+    public long getDrainedHeldMessages() {
+        return drainedHeldMessages.sum();
+    }
+}
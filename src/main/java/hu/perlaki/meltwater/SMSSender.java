@@ -1,10 +1,9 @@
 package hu.perlaki.meltwater;
 
-public class SMSSender {
+public interface SMSSender {
 
-    public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
-        String output = String.format("%s %s \"%s\"", senderPhoneNumber, receiverPhoneNumber, message);
+    void send(String senderPhoneNumber, String receiverPhoneNumber, String message);
 
-        System.out.println(output);
+    default void close() {
     }
 }
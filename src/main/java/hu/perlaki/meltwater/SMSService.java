@@ -0,0 +1,47 @@
+package hu.perlaki.meltwater;
+
+import java.util.List;
+
+public interface SMSService {
+
+    void register(String identifier, String phoneNumber);
+
+    void subscribe(String identifier);
+
+    void unsubscribe(String identifier);
+
+    void createGroup(String groupIdentifier, List<String> phonePatterns);
+
+    void sendMessage(String senderIdentifier, String receiverIdentifier, String message);
+
+    void sendBroadcast(String senderIdentifier, String message);
+
+    void sendGroupMessage(String senderIdentifier, String groupIdentifier, String message);
+
+    /**
+     * Sends a message to every target of a comma separated receiver list: identifiers, groups and {@code broadcast}.
+     */
+    default void sendToTargets(String senderIdentifier, List<String> targets, String message) {
+        for (String target : targets) {
+            if(target.startsWith("number")) {
+                sendMessage(senderIdentifier, target, message);
+            } else if(target.startsWith("group")) {
+                sendGroupMessage(senderIdentifier, target, message);
+            } else if(target.equals("broadcast")) {
+                sendBroadcast(senderIdentifier, message);
+            }
+        }
+    }
+
+    default void setMetrics(SMSMetrics metrics) {
+    }
+
+    /**
+     * The trail is closed together with the center.
+     */
+    default void setAuditTrail(AuditTrail auditTrail) {
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,235 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the messages handed over to the transport. The messages are put on a {@link TimingWheel} driven by a
+ * scheduler thread: deferred messages wait for their delivery time, and the due messages of a receiver wait in its
+ * own queue until the per-receiver interval after the previous message was actually handed over, so a drained backlog
+ * of held messages is delivered at the receiver's rate instead of in one burst, even if a hand-over is late. Due
+ * messages are then handed over in arrival order, at most at the global rate.
+ * <p>
+ * The transport is only called from the scheduler thread.
+ */
+@Slf4j
+public class ScheduledSMSSender implements SMSSender {
+
+    public static final double UNLIMITED = 0;
+    public static final long DEFAULT_TICK_MILLIS = 1;
+
+    private final SMSSender transport;
+    private final long tickNanos;
+    private final long receiverIntervalNanos;
+    private final long globalIntervalNanos;
+    private final long startNanos = System.nanoTime();
+    private final Queue<Delivery> submissions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingDeliveries = new AtomicLong();
+    private final Thread scheduler;
+    private volatile boolean closed;
+
+    private final TimingWheel wheel = new TimingWheel(0);
+    private final Map<String, Receiver> receivers = new HashMap<>();
+    private final ArrayDeque<Delivery> ready = new ArrayDeque<>();
+    private long nowNanos;
+    private long nextGlobalNanos;
+
+    /**
+     * @param receiverRate messages per second to the same receiver, or {@link #UNLIMITED}
+     * @param globalRate messages per second in total, or {@link #UNLIMITED}
+     */
+    public ScheduledSMSSender(SMSSender transport, double receiverRate, double globalRate, long tickMillis) {
+        this.transport = transport;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.receiverIntervalNanos = intervalNanos(receiverRate);
+        this.globalIntervalNanos = intervalNanos(globalRate);
+
+        scheduler = new Thread(this::run, "sms-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    private static long intervalNanos(double rate) {
+        return rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+    }
+
+    @Override
+    public void send(String senderPhoneNumber, String receiverPhoneNumber, String message) {
+        sendLater(senderPhoneNumber, receiverPhoneNumber, message, 0);
+    }
+
+    /**
+     * Delivers the message not sooner than the given delay, and not sooner than the rate limits allow.
+     */
+    public void sendLater(String senderPhoneNumber, String receiverPhoneNumber, String message, long delayMillis) {
+        pendingDeliveries.incrementAndGet();
+        if(closed) {
+            pendingDeliveries.decrementAndGet();
+            throw new RuntimeException("The sender is already closed");
+        }
+
+        long notBeforeNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        submissions.add(new Delivery(senderPhoneNumber, receiverPhoneNumber, message, notBeforeNanos));
+    }
+
+    /**
+     * Returns the number of accepted messages that are not handed over to the transport yet.
+     */
+    public long getPendingDeliveries() {
+        return pendingDeliveries.get();
+    }
+
+    /**
+     * Waits until every accepted message is delivered, deferred and rate limited ones included, then closes the
+     * transport.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            scheduler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while delivering the scheduled messages", e);
+            return;
+        }
+        transport.close();
+    }
+
+    private void run() {
+        while(!closed || pendingDeliveries.get() > 0) {
+            nowNanos = System.nanoTime() - startNanos;
+
+            Delivery delivery;
+            while((delivery = submissions.poll()) != null) {
+                wheel.schedule(delivery, tickOf(delivery.notBeforeNanos));
+            }
+            wheel.advanceTo(nowNanos / tickNanos);
+            deliverReady();
+
+            LockSupport.parkNanos(tickNanos);
+        }
+    }
+
+    /**
+     * The first tick that is not before the given time.
+     */
+    private long tickOf(long nanos) {
+        return (nanos + tickNanos - 1) / tickNanos;
+    }
+
+    private void deliverReady() {
+        if(globalIntervalNanos == 0) {
+            while(!ready.isEmpty()) {
+                deliver(ready.poll());
+            }
+            return;
+        }
+
+        // at most one tick worth of messages can be caught up after an idle period
+        nextGlobalNanos = Math.max(nextGlobalNanos, nowNanos - tickNanos);
+        while(!ready.isEmpty() && nextGlobalNanos <= nowNanos) {
+            deliver(ready.poll());
+            nextGlobalNanos += globalIntervalNanos;
+        }
+    }
+
+    private void deliver(Delivery delivery) {
+        try {
+            transport.send(delivery.senderPhoneNumber, delivery.receiverPhoneNumber, delivery.message);
+        } catch (RuntimeException e) {
+            log.error("Message could not be delivered to {}", delivery.receiverPhoneNumber, e);
+        } finally {
+            pendingDeliveries.decrementAndGet();
+            if(delivery.receiver != null) {
+                // measured after the transport returned, however late or slow the hand-over was
+                delivery.receiver.delivered(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private class Delivery extends TimingWheel.Timer {
+        private final String senderPhoneNumber;
+        private final String receiverPhoneNumber;
+        private final String message;
+        private final long notBeforeNanos;
+        private Receiver receiver;
+
+        Delivery(String senderPhoneNumber, String receiverPhoneNumber, String message, long notBeforeNanos) {
+            this.senderPhoneNumber = senderPhoneNumber;
+            this.receiverPhoneNumber = receiverPhoneNumber;
+            this.message = message;
+            this.notBeforeNanos = notBeforeNanos;
+        }
+
+        @Override
+        protected void expire() {
+            if(receiverIntervalNanos == 0) {
+                ready.add(this);
+                return;
+            }
+
+            receiver = receivers.get(receiverPhoneNumber);
+            if(receiver == null) {
+                receiver = new Receiver(receiverPhoneNumber);
+                receivers.put(receiverPhoneNumber, receiver);
+            }
+            receiver.add(this);
+        }
+    }
+
+    /**
+     * The due messages of a receiver. Only one of them is ready at a time, the next one is released an interval after
+     * the transport returned from the previous one. The receiver is forgotten once that interval is over and nothing
+     * waits, so only the recently served receivers are kept.
+     */
+    private class Receiver extends TimingWheel.Timer {
+        private final String phoneNumber;
+        private final ArrayDeque<Delivery> waiting = new ArrayDeque<>();
+        private boolean released;
+        private long nextDeliveryNanos;
+
+        Receiver(String phoneNumber) {
+            this.phoneNumber = phoneNumber;
+        }
+
+        void add(Delivery delivery) {
+            if(!released && waiting.isEmpty() && nextDeliveryNanos <= nowNanos) {
+                release(delivery);
+            } else {
+                waiting.add(delivery);
+            }
+        }
+
+        void delivered(long handOverNanos) {
+            released = false;
+            nextDeliveryNanos = handOverNanos + receiverIntervalNanos;
+            wheel.schedule(this, tickOf(nextDeliveryNanos));
+        }
+
+        private void release(Delivery delivery) {
+            released = true;
+            // rescheduled once the delivery is handed over
+            wheel.cancel(this);
+            ready.add(delivery);
+        }
+
+        @Override
+        protected void expire() {
+            Delivery next = waiting.poll();
+            if(next != null) {
+                release(next);
+            } else {
+                receivers.remove(phoneNumber, this);
+            }
+        }
+    }
+}
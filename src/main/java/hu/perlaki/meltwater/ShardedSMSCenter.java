@@ -0,0 +1,235 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+@Slf4j
+public class ShardedSMSCenter implements SMSService {
+
+    private static final char MAX_CHAR = Character.MAX_VALUE;
+
+    protected Map<String, String> registeredNumbers = new ConcurrentHashMap<>();
+    protected Set<String> subscribedNumbers = ConcurrentHashMap.newKeySet();
+    protected Map<String, BitSet> groupShards = new ConcurrentHashMap<>();
+
+    private final String[] splitPoints;
+    private volatile AuditTrail auditTrail = AuditTrail.LOG;
+    private final Shard[] shards;
+
+    public ShardedSMSCenter(SMSSender smsSender, List<String> splitPoints) {
+        this(smsSender, splitPoints, shardIndex -> new BoundedHeldMessageStore());
+    }
+
+    public ShardedSMSCenter(SMSSender smsSender, List<String> splitPoints,
+                            IntFunction<HeldMessageStore> heldMessageStores) {
+        this.splitPoints = splitPoints.toArray(new String[0]);
+        Arrays.sort(this.splitPoints);
+
+        this.shards = new Shard[this.splitPoints.length + 1];
+        for (int i = 0; i < shards.length; i++) {
+            SMSCenter shardCenter = new SMSCenter(smsSender, heldMessageStores.apply(i));
+            // the front end records every command
+            shardCenter.setAuditTrail(AuditTrail.NONE);
+            shards[i] = new Shard(i, shardCenter);
+        }
+    }
+
+    public static ShardedSMSCenter withUniformPrefixes(SMSSender smsSender, String commonPrefix, int shardCount) {
+        return withUniformPrefixes(smsSender, commonPrefix, shardCount, shardIndex -> new BoundedHeldMessageStore());
+    }
+
+    /**
+     * Splits the digits following the common prefix evenly: two digits, or as many as needed to give every shard its
+     * own range. The numbers without the prefix are placed by their string order, so the ones sorting before the
+     * prefix (e.g. {@code +1...}) go to the first shard and the ones sorting after it (e.g. {@code +4...} or
+     * {@code 06...}) to the last shard.
+     */
+    public static ShardedSMSCenter withUniformPrefixes(SMSSender smsSender, String commonPrefix, int shardCount,
+                                                       IntFunction<HeldMessageStore> heldMessageStores) {
+        int digits = 2;
+        long range = 100;
+        while(range < shardCount) {
+            digits++;
+            range *= 10;
+        }
+
+        List<String> splitPoints = new ArrayList<>();
+        for (int i = 1; i < shardCount; i++) {
+            splitPoints.add(commonPrefix + String.format("%0" + digits + "d", i * range / shardCount));
+        }
+        return new ShardedSMSCenter(smsSender, splitPoints, heldMessageStores);
+    }
+
+    @Override
+    public void setMetrics(SMSMetrics metrics) {
+        for (Shard shard : shards) {
+            shard.center.setMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void setAuditTrail(AuditTrail auditTrail) {
+        this.auditTrail = auditTrail;
+    }
+
+    @Override
+    public void register(String identifier, String phoneNumber) {
+        auditTrail.register(identifier, phoneNumber);
+
+        // rejects the same numbers as SMSCenter, on the caller's thread
+        PhoneNumberCodec.encode(phoneNumber);
+        if (registeredNumbers.putIfAbsent(identifier, phoneNumber) != null) {
+            throw new RuntimeException("An identifier cannot be registered in the system more than one time");
+        }
+    }
+
+    @Override
+    public void subscribe(String identifier) {
+        auditTrail.subscribe(identifier);
+
+        String phoneNumber = registeredNumbers.get(identifier);
+
+        if(phoneNumber != null) {
+            subscribedNumbers.add(phoneNumber);
+            shardOf(phoneNumber).execute(center -> center.subscribeNumber(phoneNumber));
+        }
+    }
+
+    @Override
+    public void unsubscribe(String identifier) {
+        auditTrail.unsubscribe(identifier);
+
+        String phoneNumber = registeredNumbers.get(identifier);
+
+        if(phoneNumber != null) {
+            subscribedNumbers.remove(phoneNumber);
+            shardOf(phoneNumber).execute(center -> center.unsubscribeNumber(phoneNumber));
+        }
+    }
+
+    @Override
+    public void createGroup(String groupIdentifier, List<String> phonePatterns) {
+        auditTrail.createGroup(groupIdentifier, phonePatterns);
+
+        final List<String> patterns = new ArrayList<>(phonePatterns);
+        BitSet overlappingShards = new BitSet(shards.length);
+        for (String phonePattern : patterns) {
+            String trimmedPhonePattern = phonePattern.replace("*", "");
+            overlappingShards.set(shardIndexOf(trimmedPhonePattern), shardIndexOf(trimmedPhonePattern + MAX_CHAR) + 1);
+        }
+
+        BitSet previousShards = groupShards.put(groupIdentifier, overlappingShards);
+        BitSet affectedShards = (BitSet) overlappingShards.clone();
+        if(previousShards != null) {
+            affectedShards.or(previousShards);
+        }
+
+        affectedShards.stream().forEach(shardIndex -> shards[shardIndex]
+                .execute(center -> center.createGroup(groupIdentifier, patterns)));
+    }
+
+    @Override
+    public void sendMessage(String senderIdentifier, String receiverIdentifier, String message) {
+        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
+        String receiverPhoneNumber = registeredNumbers.get(receiverIdentifier);
+
+        if(senderPhoneNumber == null) {
+            throw new RuntimeException("Sender is not registered!");
+        } else if (receiverPhoneNumber == null) {
+            throw new RuntimeException("Receiver is not registered!");
+        } else if (!subscribedNumbers.contains(senderPhoneNumber)) {
+            throw new RuntimeException("Sender is not subscribed!");
+        }
+
+        shardOf(receiverPhoneNumber).execute(center -> center.deliverMessage(senderPhoneNumber, receiverPhoneNumber, message));
+    }
+
+    @Override
+    public void sendBroadcast(String senderIdentifier, String message) {
+        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
+
+        for (Shard shard : shards) {
+            shard.execute(center -> center.sendBroadcastFrom(senderPhoneNumber, message));
+        }
+    }
+
+    @Override
+    public void sendGroupMessage(String senderIdentifier, String groupIdentifier, String message) {
+        String senderPhoneNumber = registeredNumbers.get(senderIdentifier);
+        BitSet overlappingShards = groupShards.get(groupIdentifier);
+
+        if(overlappingShards == null) {
+            return;
+        }
+
+        overlappingShards.stream().forEach(shardIndex -> shards[shardIndex]
+                .execute(center -> center.sendGroupMessageFrom(senderPhoneNumber, groupIdentifier, message)));
+    }
+
+    @Override
+    public void close() {
+        auditTrail.close();
+        for (Shard shard : shards) {
+            shard.eventLoop.shutdown();
+        }
+
+        for (Shard shard : shards) {
+            try {
+                shard.eventLoop.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while waiting for the shards to finish", e);
+                return;
+            }
+            shard.center.close();
+        }
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    int shardIndexOf(String phoneNumber) {
+        int index = Arrays.binarySearch(splitPoints, phoneNumber);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private Shard shardOf(String phoneNumber) {
+        return shards[shardIndexOf(phoneNumber)];
+    }
+
+    private interface ShardTask {
+        void run(SMSCenter center);
+    }
+
+    private static class Shard {
+        private final SMSCenter center;
+        private final ExecutorService eventLoop;
+
+        Shard(int index, SMSCenter center) {
+            this.center = center;
+            this.eventLoop = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "sms-shard-" + index));
+        }
+
+        void execute(ShardTask task) {
+            eventLoop.execute(() -> {
+                try {
+                    task.run(center);
+                } catch (RuntimeException e) {
+                    log.error("Error while processing a command on a shard", e);
+                }
+            });
+        }
+    }
+}
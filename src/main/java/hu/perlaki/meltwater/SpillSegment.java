@@ -0,0 +1,115 @@
+package hu.perlaki.meltwater;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+public class SpillSegment {
+
+    public static final int DEFAULT_REGION_SIZE = 64 << 20;
+
+    private final Path path;
+    private final int regionSize;
+    private final FileChannel channel;
+    private final List<Region> regions = new ArrayList<>();
+    private int currentRegion;
+    private long position;
+
+    public SpillSegment(Path path) {
+        this(path, DEFAULT_REGION_SIZE);
+    }
+
+    public SpillSegment(Path path, int regionSize) {
+        this.path = path;
+        this.regionSize = regionSize;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Spill segment could not be opened", e);
+        }
+    }
+
+    public long append(ByteBuffer chunk) {
+        int length = chunk.remaining();
+
+        while(currentRegion < regions.size() && !regions.get(currentRegion).fits(position, length)) {
+            Region region = regions.get(currentRegion);
+            position = Math.max(position, region.base + region.buffer.capacity());
+            currentRegion++;
+        }
+        if(currentRegion == regions.size()) {
+            regions.add(map(position, Math.max(regionSize, length)));
+        }
+
+        Region region = regions.get(currentRegion);
+        ByteBuffer target = region.buffer.duplicate();
+        target.position((int) (position - region.base));
+        target.put(chunk);
+
+        long offset = position;
+        position += length;
+        return offset;
+    }
+
+    public ByteBuffer read(long offset) {
+        for (Region region : regions) {
+            if(offset >= region.base && offset < region.base + region.buffer.capacity()) {
+                ByteBuffer source = region.buffer.duplicate();
+                source.position((int) (offset - region.base));
+                return source.slice();
+            }
+        }
+        throw new RuntimeException("Offset " + offset + " is not part of the spill segment");
+    }
+
+    public void reset() {
+        currentRegion = 0;
+        position = 0;
+    }
+
+    public long size() {
+        return position;
+    }
+
+    public void close() {
+        regions.clear();
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("Error while closing the spill segment", e);
+        }
+    }
+
+    private Region map(long base, int size) {
+        try {
+            return new Region(base, channel.map(FileChannel.MapMode.READ_WRITE, base, size));
+        } catch (IOException e) {
+            throw new RuntimeException("Spill segment could not be extended", e);
+        }
+    }
+
+    private static class Region {
+        private final long base;
+        private final MappedByteBuffer buffer;
+
+        Region(long base, MappedByteBuffer buffer) {
+            this.base = base;
+            this.buffer = buffer;
+        }
+
+        boolean fits(long position, int length) {
+            return position >= base && position + length <= base + buffer.capacity();
+        }
+    }
+}
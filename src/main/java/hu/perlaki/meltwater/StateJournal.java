@@ -0,0 +1,30 @@
+package hu.perlaki.meltwater;
+
+import java.util.List;
+
+public interface StateJournal {
+
+    StateJournal NONE = new StateJournal() {
+    };
+
+    default void register(String identifier, String phoneNumber) {
+    }
+
+    default void subscribe(String phoneNumber) {
+    }
+
+    default void unsubscribe(String phoneNumber) {
+    }
+
+    default void createGroup(String groupIdentifier, List<String> trimmedPhonePatterns) {
+    }
+
+    default void hold(String receiverPhoneNumber, HeldMessage heldMessage) {
+    }
+
+    default void drain(String receiverPhoneNumber) {
+    }
+
+    default void close() {
+    }
+}
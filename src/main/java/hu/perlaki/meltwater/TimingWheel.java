@@ -0,0 +1,206 @@
+package hu.perlaki.meltwater;
+
+/**
+ * Hierarchical timing wheel of {@link Timer}s with a deadline in ticks. Every level has 256 slots, each slot of a
+ * level spans a whole turn of the level below it, and the timers are kept in intrusive doubly linked lists, so
+ * scheduling, cancelling and expiring a timer are constant time. When the lower level turns over, the timers of the
+ * next slot of the higher level are cascaded down, so a timer is moved at most once per level. Timers further away
+ * than the four levels can represent stay on the top level and are cascaded again when their slot comes round. The
+ * turns of empty levels are skipped, so advancing over an idle period is cheap too.
+ * <p>
+ * Not thread safe, the wheel is meant to be driven by one thread.
+ */
+public class TimingWheel {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int DUE = -1;
+
+    private final Timer[] slots = new Timer[LEVELS * SLOTS];
+    private final int[] levelSizes = new int[LEVELS];
+    private final Timer due = new Sentinel();
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long startTick) {
+        this.currentTick = startTick;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Sentinel();
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the timer to expire when the wheel reaches the deadline, or on the next advance if the deadline is
+     * not after the current tick.
+     */
+    public void schedule(Timer timer, long deadlineTick) {
+        if(timer.isScheduled()) {
+            throw new RuntimeException("The timer is already scheduled");
+        }
+
+        timer.deadlineTick = deadlineTick;
+        link(timer);
+        size++;
+    }
+
+    public void cancel(Timer timer) {
+        if(timer.isScheduled()) {
+            unlink(timer);
+        }
+    }
+
+    /**
+     * Moves the wheel to the given tick and expires every timer whose deadline has been reached, in deadline order.
+     * Timers scheduled by {@link Timer#expire()} with a reached deadline are expired in the same call.
+     */
+    public void advanceTo(long tick) {
+        expireDue();
+        while(currentTick < tick) {
+            if(size == 0) {
+                currentTick = tick;
+                return;
+            }
+
+            currentTick = nextTick(tick);
+            for (int level = cascadeLevels(currentTick); level > 0; level--) {
+                relink(slots[level * SLOTS + slotIndex(currentTick, level)]);
+            }
+            relink(slots[slotIndex(currentTick, 0)]);
+            expireDue();
+        }
+    }
+
+    /**
+     * Skips the turns of the empty lower levels, nothing can expire or cascade down before they end.
+     */
+    private long nextTick(long limit) {
+        long nextTick = currentTick + 1;
+        for (int level = 0; level < LEVELS - 1 && levelSizes[level] == 0; level++) {
+            int bits = SLOT_BITS * (level + 1);
+            nextTick = ((currentTick >>> bits) + 1) << bits;
+        }
+        return Math.min(nextTick, limit);
+    }
+
+    private static int cascadeLevels(long tick) {
+        int level = 0;
+        while(level < LEVELS - 1 && (tick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+    }
+
+    private void link(Timer timer) {
+        if(timer.deadlineTick <= currentTick) {
+            timer.level = DUE;
+            timer.linkBefore(due);
+            return;
+        }
+
+        int level = 0;
+        while(level < LEVELS - 1
+                && timer.deadlineTick >>> (SLOT_BITS * (level + 1)) != currentTick >>> (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        timer.level = level;
+        levelSizes[level]++;
+        timer.linkBefore(slots[level * SLOTS + slotIndex(timer.deadlineTick, level)]);
+    }
+
+    private void unlink(Timer timer) {
+        if(timer.level != DUE) {
+            levelSizes[timer.level]--;
+        }
+        timer.unlink();
+        size--;
+    }
+
+    private void relink(Timer slot) {
+        Timer timer = slot.next;
+        if(timer == slot) {
+            return;
+        }
+
+        Timer last = slot.prev;
+        slot.next = slot;
+        slot.prev = slot;
+        while(true) {
+            Timer next = timer.next;
+            timer.next = null;
+            timer.prev = null;
+            if(timer.level != DUE) {
+                levelSizes[timer.level]--;
+            }
+            link(timer);
+            if(timer == last) {
+                return;
+            }
+            timer = next;
+        }
+    }
+
+    private void expireDue() {
+        while(due.next != due) {
+            Timer timer = due.next;
+            unlink(timer);
+            timer.expire();
+        }
+    }
+
+    public abstract static class Timer {
+        private Timer prev;
+        private Timer next;
+        private long deadlineTick;
+        private int level;
+
+        public boolean isScheduled() {
+            return next != null;
+        }
+
+        public long getDeadlineTick() {
+            return deadlineTick;
+        }
+
+        protected abstract void expire();
+
+        private void linkBefore(Timer sentinel) {
+            prev = sentinel.prev;
+            next = sentinel;
+            sentinel.prev.next = this;
+            sentinel.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+
+    private static class Sentinel extends Timer {
+        Sentinel() {
+            super.prev = this;
+            super.next = this;
+        }
+
+        @Override
+        protected void expire() {
+            throw new RuntimeException("Sentinel timers never expire");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package hu.perlaki.meltwater;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a {@link RingBuffer} producer or consumer does while the buffer is full or empty. Spinning has the lowest
+ * latency but keeps a core busy, parking frees the core at the cost of waking up late.
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN {
+        @Override
+        void idle() {
+        }
+    },
+    YIELD {
+        @Override
+        void idle() {
+            Thread.yield();
+        }
+    },
+    PARK {
+        @Override
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final long PARK_NANOS = 50_000;
+
+    abstract void idle();
+}
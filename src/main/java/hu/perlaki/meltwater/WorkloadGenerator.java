@@ -0,0 +1,220 @@
+package hu.perlaki.meltwater;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates a reproducible input file in the {@link InputProcessor} format: the registrations of all numbers (a part
+ * of them subscribed), the groups, then the messages mixed with subscription churn. Every command of the stream is
+ * valid, senders are always subscribed when they send, so the whole file can be processed by any SMS center. The same
+ * {@link Workload} and seed always give the same file.
+ */
+@Slf4j
+public class WorkloadGenerator {
+
+    private static final long PHONE_NUMBER_RANGE = 1_000_000_000L;
+    private static final long PHONE_NUMBER_STRIDE = 1_000_003L;
+    private static final int SENDER_ATTEMPTS = 64;
+    private static final int DISTINCT_MESSAGES = 1000;
+
+    private final Workload workload;
+    private final Random random;
+    private final StringBuilder line = new StringBuilder(256);
+    private boolean[] subscribed;
+    private long phoneNumberOffset;
+    private long commands;
+
+    public WorkloadGenerator(Workload workload) {
+        this.workload = workload;
+        this.random = new Random(workload.getSeed());
+    }
+
+    public static void main(String[] args) {
+        if(args.length != 1) {
+            System.err.println("Usage: WorkloadGenerator <output>, sizes are given as -Dworkload.* system properties");
+            System.exit(1);
+        }
+
+        Workload workload = Workload.fromSystemProperties();
+        long commands = new WorkloadGenerator(workload).generate(Paths.get(args[0]));
+        log.info("Generated {} commands of {}", commands, workload);
+    }
+
+    /**
+     * Returns the number of commands written.
+     */
+    public long generate(Path outputPath) {
+        random.setSeed(workload.getSeed());
+        subscribed = new boolean[workload.getNumbers()];
+        phoneNumberOffset = Math.floorMod(random.nextLong(), PHONE_NUMBER_RANGE);
+        commands = 0;
+
+        try(BufferedWriter output = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(outputPath), StandardCharsets.UTF_8), 1 << 16)) {
+            writeRegistrations(output);
+            writeGroups(output);
+            writeMessages(output);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while writing the workload to " + outputPath, e);
+        }
+
+        return commands;
+    }
+
+    private void writeRegistrations(BufferedWriter output) throws IOException {
+        for (int number = 0; number < workload.getNumbers(); number++) {
+            startLine().append("number").append(number).append(' ').append(phoneNumberOf(number));
+            writeLine(output);
+
+            if(random.nextDouble() < workload.getSubscribedRatio()) {
+                writeSubscription(output, number, true);
+            }
+        }
+    }
+
+    /**
+     * Spreads the numbers evenly over the nine digits following +36, so every prefix range gets its share.
+     */
+    private String phoneNumberOf(int number) {
+        long digits = (number * PHONE_NUMBER_STRIDE + phoneNumberOffset) % PHONE_NUMBER_RANGE;
+        String padded = Long.toString(PHONE_NUMBER_RANGE + digits);
+        return "+36" + padded.substring(1);
+    }
+
+    /**
+     * Every pattern is +36 followed by a uniformly chosen number of random digits, so groups of short patterns are
+     * large and overlap with the groups of the longer patterns they contain.
+     */
+    private void writeGroups(BufferedWriter output) throws IOException {
+        int digitRange = workload.getGroupPrefixMaxDigits() - workload.getGroupPrefixMinDigits() + 1;
+
+        for (int group = 0; group < workload.getGroups(); group++) {
+            startLine().append("group").append(group);
+            for (int pattern = 0; pattern < workload.getPatternsPerGroup(); pattern++) {
+                line.append(" +36");
+                int digits = workload.getGroupPrefixMinDigits() + random.nextInt(digitRange);
+                for (int digit = 0; digit < digits; digit++) {
+                    line.append((char) ('0' + random.nextInt(10)));
+                }
+                line.append('*');
+            }
+            writeLine(output);
+        }
+    }
+
+    private void writeMessages(BufferedWriter output) throws IOException {
+        for (int message = 0; message < workload.getMessages(); message++) {
+            if(random.nextDouble() < workload.getChurnRatio()) {
+                int number = random.nextInt(workload.getNumbers());
+                writeSubscription(output, number, !subscribed[number]);
+            }
+
+            int sender = subscribedSender(output);
+            startLine().append("message number").append(sender).append(' ');
+
+            double kind = random.nextDouble();
+            if(kind < workload.getBroadcastRatio()) {
+                line.append("broadcast");
+            } else if(kind < workload.getBroadcastRatio() + workload.getGroupMessageRatio() && workload.getGroups() > 0) {
+                line.append("group").append(random.nextInt(workload.getGroups()));
+            } else {
+                int receivers = 1 + random.nextInt(workload.getMaxDirectReceivers());
+                for (int receiver = 0; receiver < receivers; receiver++) {
+                    if(receiver > 0) {
+                        line.append(',');
+                    }
+                    line.append("number").append(random.nextInt(workload.getNumbers()));
+                }
+            }
+
+            line.append(" \"Workload message ").append(random.nextInt(DISTINCT_MESSAGES)).append('"');
+            writeLine(output);
+        }
+    }
+
+    /**
+     * Picks a random subscribed number, subscribing one if the subscribed numbers are too rare to be found.
+     */
+    private int subscribedSender(BufferedWriter output) throws IOException {
+        int sender = 0;
+        for (int attempt = 0; attempt < SENDER_ATTEMPTS; attempt++) {
+            sender = random.nextInt(workload.getNumbers());
+            if(subscribed[sender]) {
+                return sender;
+            }
+        }
+
+        writeSubscription(output, sender, true);
+        return sender;
+    }
+
+    private void writeSubscription(BufferedWriter output, int number, boolean subscribe) throws IOException {
+        startLine().append(subscribe ? "subscribe number" : "unsubscribe number").append(number);
+        writeLine(output);
+        subscribed[number] = subscribe;
+    }
+
+    private StringBuilder startLine() {
+        line.setLength(0);
+        return line;
+    }
+
+    private void writeLine(BufferedWriter output) throws IOException {
+        line.append('\n');
+        output.append(line);
+        commands++;
+    }
+
+    @Data
+    public static class Workload {
+        private long seed = 42;
+        private int numbers = 100_000;
+        private double subscribedRatio = 0.9;
+        private int groups = 100;
+        private int patternsPerGroup = 2;
+        private int groupPrefixMinDigits = 2;
+        private int groupPrefixMaxDigits = 5;
+        private int messages = 1_000_000;
+        private double churnRatio = 0.05;
+        private double groupMessageRatio = 0.01;
+        private double broadcastRatio = 0.0001;
+        private int maxDirectReceivers = 3;
+
+        /**
+         * Overrides the defaults with the {@code workload.<field>} system properties, e.g. {@code -Dworkload.numbers}.
+         */
+        public static Workload fromSystemProperties() {
+            Workload workload = new Workload();
+            workload.setSeed(Long.getLong("workload.seed", workload.getSeed()));
+            workload.setNumbers(Integer.getInteger("workload.numbers", workload.getNumbers()));
+            workload.setSubscribedRatio(doubleProperty("workload.subscribedRatio", workload.getSubscribedRatio()));
+            workload.setGroups(Integer.getInteger("workload.groups", workload.getGroups()));
+            workload.setPatternsPerGroup(Integer.getInteger("workload.patternsPerGroup", workload.getPatternsPerGroup()));
+            workload.setGroupPrefixMinDigits(
+                    Integer.getInteger("workload.groupPrefixMinDigits", workload.getGroupPrefixMinDigits()));
+            workload.setGroupPrefixMaxDigits(
+                    Integer.getInteger("workload.groupPrefixMaxDigits", workload.getGroupPrefixMaxDigits()));
+            workload.setMessages(Integer.getInteger("workload.messages", workload.getMessages()));
+            workload.setChurnRatio(doubleProperty("workload.churnRatio", workload.getChurnRatio()));
+            workload.setGroupMessageRatio(doubleProperty("workload.groupMessageRatio", workload.getGroupMessageRatio()));
+            workload.setBroadcastRatio(doubleProperty("workload.broadcastRatio", workload.getBroadcastRatio()));
+            workload.setMaxDirectReceivers(
+                    Integer.getInteger("workload.maxDirectReceivers", workload.getMaxDirectReceivers()));
+            return workload;
+        }
+
+        private static double doubleProperty(String name, double defaultValue) {
+            String value = System.getProperty(name);
+            return value != null ? Double.parseDouble(value) : defaultValue;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncSMSSenderTests {
+
+    private static final String SENDER_PHONE_NUMBER = "+36991212321";
+    private static final int RECEIVERS = 10;
+    private static final int MESSAGES_PER_RECEIVER = 50;
+
+    private final List<String> deliveries = Collections.synchronizedList(new ArrayList<>());
+    private final SMSSender recordingSender = (sender, receiver, message) -> deliveries.add(receiver + " " + message);
+
+    @Test
+    public void sendShouldKeepOrderPerReceiver() {
+        // GIVEN
+        AsyncSMSSender smsSender = new AsyncSMSSender(recordingSender, 4, 16, AsyncSMSSender.BackpressurePolicy.SPILL);
+
+        // WHEN
+        for (int i = 0; i < MESSAGES_PER_RECEIVER; i++) {
+            for (int receiver = 0; receiver < RECEIVERS; receiver++) {
+                smsSender.send(SENDER_PHONE_NUMBER, "+3612345678" + receiver, String.valueOf(i));
+            }
+        }
+        smsSender.close();
+
+        // THEN
+        assertThat(deliveries).hasSize(RECEIVERS * MESSAGES_PER_RECEIVER);
+        for (int receiver = 0; receiver < RECEIVERS; receiver++) {
+            List<String> receiverMessages = new ArrayList<>();
+            for (String delivery : deliveries) {
+                if(delivery.startsWith("+3612345678" + receiver + " ")) {
+                    receiverMessages.add(delivery.split(" ")[1]);
+                }
+            }
+
+            for (int i = 0; i < MESSAGES_PER_RECEIVER; i++) {
+                assertThat(receiverMessages.get(i)).isEqualTo(String.valueOf(i));
+            }
+        }
+    }
+
+    @Test
+    public void sendShouldNotWaitForSlowTransport() {
+        // GIVEN
+        AsyncSMSSender smsSender = new AsyncSMSSender(new DelayingSMSSender(recordingSender, 20), 4, 1000,
+                AsyncSMSSender.BackpressurePolicy.BLOCK);
+
+        // WHEN
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            smsSender.send(SENDER_PHONE_NUMBER, "+36123456789" + i, "MESSAGE");
+        }
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        smsSender.close();
+
+        // THEN
+        assertThat(submitMillis).isLessThan(500);
+        assertThat(deliveries).hasSize(100);
+    }
+
+    @Test
+    public void sendShouldDropMessagesOnFullQueue() throws InterruptedException {
+        // GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+        SMSSender blockedSender = (sender, receiver, message) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AsyncSMSSender smsSender = new AsyncSMSSender(blockedSender, 1, 2, AsyncSMSSender.BackpressurePolicy.DROP);
+
+        // WHEN
+        for (int i = 0; i < 10; i++) {
+            smsSender.send(SENDER_PHONE_NUMBER, SENDER_PHONE_NUMBER, "MESSAGE");
+        }
+        release.countDown();
+        smsSender.close();
+
+        // THEN
+        assertThat(smsSender.getDroppedMessages()).isBetween(7L, 8L);
+    }
+}
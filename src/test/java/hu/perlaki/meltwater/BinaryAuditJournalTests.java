@@ -0,0 +1,124 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BinaryAuditJournalTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void decodeShouldReturnTheRecordedCommandsOfSMSCenter() throws IOException {
+        // GIVEN
+        Path directory = temporaryFolder.newFolder("audit").toPath();
+        SMSCenter smsCenter = new SMSCenter((sender, receiver, message) -> { });
+        smsCenter.setAuditTrail(new BinaryAuditJournal(directory));
+
+        // WHEN
+        smsCenter.register("number1", "+36991212321");
+        smsCenter.register("\u00e1rv\u00edzt\u0171r\u0151", "+36123456789");
+        smsCenter.subscribe("number1");
+        smsCenter.createGroup("group1", Arrays.asList("+3699*", "+36123*"));
+        smsCenter.unsubscribe("number1");
+        smsCenter.close();
+        List<String> lines = decode(directory);
+
+        // THEN
+        assertThat(lines).hasSize(5);
+        assertThat(withoutTimestamps(lines)).containsExactly(
+                "REGISTER number1 +36991212321",
+                "REGISTER \u00e1rv\u00edzt\u0171r\u0151 +36123456789",
+                "SUBSCRIBE number1",
+                "CREATE_GROUP group1 +3699* +36123*",
+                "UNSUBSCRIBE number1");
+        assertThat(lines.get(0)).matches("\\d{4}-\\d{2}-\\d{2}T.*Z REGISTER .*");
+    }
+
+    @Test
+    public void journalShouldRollFilesAndKeepRecordsFromConcurrentCallers() throws Exception {
+        // GIVEN
+        Path directory = temporaryFolder.newFolder("audit").toPath();
+        BinaryAuditJournal journal = new BinaryAuditJournal(directory, 16 * BinaryAuditJournal.BLOCK_SIZE, 64);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            patterns.add("+36" + i + "*");
+        }
+
+        // WHEN
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            int threadIndex = thread;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    journal.subscribe("number" + threadIndex + "-" + i);
+                    if(i % 100 == 0) {
+                        journal.createGroup("group" + threadIndex + "-" + i, patterns);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+        List<String> lines = withoutTimestamps(decode(directory));
+
+        // THEN
+        assertThat(BinaryAuditJournal.lastFileIndex(directory)).isGreaterThan(10);
+        assertThat(lines).hasSize(4 * 1010);
+        Set<String> subscribed = new HashSet<>();
+        for (String line : lines) {
+            if(line.startsWith("SUBSCRIBE ")) {
+                subscribed.add(line);
+            } else {
+                assertThat(line).startsWith("CREATE_GROUP group").endsWith(" +3619*");
+            }
+        }
+        assertThat(subscribed).hasSize(4000).contains("SUBSCRIBE number3-999");
+    }
+
+    @Test
+    public void journalShouldContinueWithNewFileAfterRestart() throws IOException {
+        // GIVEN
+        Path directory = temporaryFolder.newFolder("audit").toPath();
+        BinaryAuditJournal first = new BinaryAuditJournal(directory);
+        first.subscribe("number1");
+        first.close();
+
+        // WHEN
+        BinaryAuditJournal second = new BinaryAuditJournal(directory);
+        second.unsubscribe("number1");
+        second.close();
+
+        // THEN
+        assertThat(withoutTimestamps(decode(directory))).containsExactly("SUBSCRIBE number1", "UNSUBSCRIBE number1");
+    }
+
+    private static List<String> decode(Path directory) {
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        new AuditJournalDecoder().decode(directory, lines::add);
+        return lines;
+    }
+
+    private static List<String> withoutTimestamps(List<String> lines) {
+        List<String> withoutTimestamps = new ArrayList<>();
+        for (String line : lines) {
+            withoutTimestamps.add(line.substring(line.indexOf(' ') + 1));
+        }
+        return withoutTimestamps;
+    }
+}
@@ -0,0 +1,77 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class BinaryCommandReplayerTests {
+
+    private static final String COMMANDS = "number1 +36991212321\n"
+            + "number2 +36123456789\n"
+            + "number3 06987654321\n"
+            + "subscribe number1\n"
+            + "subscribe number2\n"
+            + "group1 +3699* +36123*\n"
+            + "message number1 number2 \"Hi Ann, pub?\"\n"
+            + "message number2 number3,group1 \"\u00c1rv\u00edzt\u0171r\u0151\"\n"
+            + "\n"
+            + "unsubscribe number2\n"
+            + "message number1 broadcast,number2 \"Last one\"\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void replayShouldSendTheSameMessagesAsTheTextInput() throws IOException {
+        // GIVEN
+        Path textPath = write("input.txt", COMMANDS);
+        Path binaryPath = temporaryFolder.getRoot().toPath().resolve("input.bin");
+        long converted = new BinaryCommandConverter().convert(textPath, binaryPath);
+
+        List<String> textDeliveries = new ArrayList<>();
+        SMSCenter textCenter = new SMSCenter((sender, receiver, message) -> textDeliveries.add(sender + " " + receiver + " " + message));
+        new InputProcessor(textCenter, textPath).process();
+
+        // WHEN
+        List<String> binaryDeliveries = new ArrayList<>();
+        SMSCenter binaryCenter = new SMSCenter((sender, receiver, message) -> binaryDeliveries.add(sender + " " + receiver + " " + message));
+        long replayed = new BinaryCommandReplayer(binaryCenter, SMSMetrics.NONE).replay(binaryPath);
+
+        // THEN
+        assertThat(BinaryCommandFormat.isBinary(binaryPath)).isTrue();
+        assertThat(BinaryCommandFormat.isBinary(textPath)).isFalse();
+        assertThat(replayed).isEqualTo(converted).isEqualTo(10);
+        assertThat(binaryDeliveries).isNotEmpty().isEqualTo(textDeliveries);
+        assertThat(binaryCenter.heldMessages.peek("+36123456789")).isEqualTo(textCenter.heldMessages.peek("+36123456789"));
+        assertThat(Files.size(binaryPath)).isLessThan(Files.size(textPath));
+    }
+
+    @Test
+    public void convertShouldRejectInvalidPhoneNumbersWithTheLineNumber() throws IOException {
+        // GIVEN
+        Path textPath = write("input.txt", "number1 +36991212321\nnumber2 +36-1234\n");
+
+        // WHEN
+        Throwable thrown = catchThrowable(() -> new BinaryCommandConverter()
+                .convert(textPath, temporaryFolder.getRoot().toPath().resolve("input.bin")));
+
+        // THEN
+        assertThat(thrown).hasMessageStartingWith("Line 2 could not be converted");
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve(name);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+}
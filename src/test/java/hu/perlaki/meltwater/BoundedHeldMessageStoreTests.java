@@ -0,0 +1,141 @@
+package hu.perlaki.meltwater;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedHeldMessageStoreTests {
+
+    private static final String SENDER_PHONE_NUMBER = "+36991212321";
+    private static final String RECEIVER_PHONE_NUMBER_1 = "+36123456789";
+    private static final String RECEIVER_PHONE_NUMBER_2 = "+36987654321";
+    private static final int UNLIMITED = BoundedHeldMessageStore.UNLIMITED;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(1000);
+    private BoundedHeldMessageStore store;
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void drainShouldRemoveHeldMessages() {
+        // GIVEN
+        store = new BoundedHeldMessageStore();
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 1"));
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 2"));
+
+        // WHEN
+        List<HeldMessage> drained = store.drain(RECEIVER_PHONE_NUMBER_1);
+
+        // THEN
+        assertThat(drained).containsExactly(message("MESSAGE 1"), message("MESSAGE 2"));
+        assertThat(store.drain(RECEIVER_PHONE_NUMBER_1)).isEmpty();
+        assertThat(store.statistics().getHeldMessages()).isZero();
+    }
+
+    @Test
+    public void holdShouldEvictOldestMessageOverReceiverLimit() {
+        // GIVEN
+        store = new BoundedHeldMessageStore(2, UNLIMITED, 0, UNLIMITED, null, clock::get);
+
+        // WHEN
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 1"));
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 2"));
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 3"));
+
+        // THEN
+        assertThat(store.peek(RECEIVER_PHONE_NUMBER_1)).containsExactly(message("MESSAGE 2"), message("MESSAGE 3"));
+        assertThat(store.statistics().getEvictedMessages()).isEqualTo(1);
+    }
+
+    @Test
+    public void holdShouldEvictFromLeastRecentlyUsedReceiverOverGlobalLimit() {
+        // GIVEN
+        store = new BoundedHeldMessageStore(UNLIMITED, 2, 0, UNLIMITED, null, clock::get);
+
+        // WHEN
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 1"));
+        store.hold(RECEIVER_PHONE_NUMBER_2, message("MESSAGE 2"));
+        store.hold(RECEIVER_PHONE_NUMBER_2, message("MESSAGE 3"));
+
+        // THEN
+        assertThat(store.depth(RECEIVER_PHONE_NUMBER_1)).isZero();
+        assertThat(store.depth(RECEIVER_PHONE_NUMBER_2)).isEqualTo(2);
+        assertThat(store.statistics().getReceivers()).isEqualTo(1);
+    }
+
+    @Test
+    public void drainShouldSkipExpiredMessages() {
+        // GIVEN
+        store = new BoundedHeldMessageStore(UNLIMITED, UNLIMITED, 100, UNLIMITED, null, clock::get);
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 1"));
+        clock.addAndGet(60);
+        store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE 2"));
+        clock.addAndGet(60);
+
+        // WHEN
+        List<HeldMessage> drained = store.drain(RECEIVER_PHONE_NUMBER_1);
+
+        // THEN
+        assertThat(drained).containsExactly(message("MESSAGE 2"));
+        assertThat(store.statistics().getExpiredMessages()).isEqualTo(1);
+    }
+
+    @Test
+    public void holdShouldSpillColdReceiversOverHeapLimit() throws IOException {
+        // GIVEN
+        SpillSegment spillSegment = new SpillSegment(temporaryFolder.newFile().toPath(), 256);
+        store = new BoundedHeldMessageStore(UNLIMITED, UNLIMITED, 0, 4, spillSegment, clock::get);
+        List<HeldMessage> expected = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < 20; i++) {
+            expected.add(message("MESSAGE " + i));
+            store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE " + i));
+            store.hold(RECEIVER_PHONE_NUMBER_2, message("OTHER MESSAGE " + i));
+        }
+
+        // THEN
+        HeldMessageStatistics statistics = store.statistics();
+        assertThat(statistics.getHeapMessages()).isLessThanOrEqualTo(4);
+        assertThat(statistics.getSpilledMessages()).isEqualTo(40 - statistics.getHeapMessages());
+        assertThat(store.depth(RECEIVER_PHONE_NUMBER_1)).isEqualTo(20);
+        assertThat(store.drain(RECEIVER_PHONE_NUMBER_1)).containsExactlyElementsOf(expected);
+        assertThat(store.drain(RECEIVER_PHONE_NUMBER_2)).hasSize(20);
+        assertThat(spillSegment.size()).isZero();
+    }
+
+    @Test
+    public void holdShouldEvictSpilledMessagesFirst() throws IOException {
+        // GIVEN
+        SpillSegment spillSegment = new SpillSegment(temporaryFolder.newFile().toPath());
+        store = new BoundedHeldMessageStore(3, UNLIMITED, 0, 1, spillSegment, clock::get);
+
+        // WHEN
+        for (int i = 1; i <= 5; i++) {
+            store.hold(RECEIVER_PHONE_NUMBER_1, message("MESSAGE " + i));
+            store.hold(RECEIVER_PHONE_NUMBER_2, message("OTHER MESSAGE " + i));
+        }
+
+        // THEN
+        assertThat(store.drain(RECEIVER_PHONE_NUMBER_1))
+                .containsExactly(message("MESSAGE 3"), message("MESSAGE 4"), message("MESSAGE 5"));
+    }
+
+    private static HeldMessage message(String message) {
+        return new HeldMessage(SENDER_PHONE_NUMBER, message);
+    }
+}
@@ -0,0 +1,110 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BufferedSMSSenderTests {
+
+    private static final String PHONE_NUMBER_1 = "+36991212321";
+    private static final String PHONE_NUMBER_2 = "+36123456789";
+
+    private static final String UNICODE_MESSAGE = "\u00c1rv\u00edzt\u0171r\u0151 t\u00fck\u00f6rf\u00far\u00f3g\u00e9p \ud83d\udcf1";
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    public void sendShouldWriteSameFormatAsConsoleSender() {
+        // GIVEN
+        BufferedSMSSender smsSender = new BufferedSMSSender(Channels.newChannel(output), true, 1024, 0);
+
+        // WHEN
+        smsSender.send(PHONE_NUMBER_1, PHONE_NUMBER_2, UNICODE_MESSAGE);
+        smsSender.close();
+
+        // THEN
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8))
+                .isEqualTo(String.format("%s %s \"%s\"\n", PHONE_NUMBER_1, PHONE_NUMBER_2, UNICODE_MESSAGE));
+    }
+
+    @Test
+    public void sendEncodedMessageShouldWriteSameFormatAsConsoleSender() {
+        // GIVEN
+        BufferedSMSSender smsSender = new BufferedSMSSender(Channels.newChannel(output), true, 1024, 0);
+        EncodedMessage encodedMessage = new EncodedMessage(PHONE_NUMBER_1, UNICODE_MESSAGE);
+
+        // WHEN
+        smsSender.send(encodedMessage, PhoneNumberCodec.encode(PHONE_NUMBER_2));
+        smsSender.send(encodedMessage, PhoneNumberCodec.encode("06301234567"));
+        smsSender.close();
+
+        // THEN
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8))
+                .isEqualTo(String.format("%s %s \"%s\"\n", PHONE_NUMBER_1, PHONE_NUMBER_2, UNICODE_MESSAGE)
+                        + String.format("%s %s \"%s\"\n", PHONE_NUMBER_1, "06301234567", UNICODE_MESSAGE));
+    }
+
+    @Test
+    public void sendEncodedMessageShouldWriteMessagesLargerThanTheBuffer() {
+        // GIVEN
+        BufferedSMSSender smsSender = new BufferedSMSSender(Channels.newChannel(output), true, 32, 0);
+        String message = String.join("", Collections.nCopies(10, "MESSAGE "));
+
+        // WHEN
+        smsSender.send(new EncodedMessage(PHONE_NUMBER_1, message), PhoneNumberCodec.encode(PHONE_NUMBER_2));
+        smsSender.close();
+
+        // THEN
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8))
+                .isEqualTo(String.format("%s %s \"%s\"\n", PHONE_NUMBER_1, PHONE_NUMBER_2, message));
+    }
+
+    @Test
+    public void sendShouldBufferUntilFlushed() {
+        // GIVEN
+        BufferedSMSSender smsSender = new BufferedSMSSender(Channels.newChannel(output), true, 1024, 0);
+
+        // WHEN
+        smsSender.send(PHONE_NUMBER_1, PHONE_NUMBER_2, "MESSAGE");
+
+        // THEN
+        assertThat(output.size()).isZero();
+        smsSender.flush();
+        assertThat(output.size()).isPositive();
+    }
+
+    @Test
+    public void sendShouldFlushWhenBufferIsFull() {
+        // GIVEN
+        BufferedSMSSender smsSender = new BufferedSMSSender(Channels.newChannel(output), true, 128, 0);
+
+        // WHEN
+        for (int i = 0; i < 10; i++) {
+            smsSender.send(PHONE_NUMBER_1, PHONE_NUMBER_2, "MESSAGE " + i);
+        }
+
+        // THEN
+        assertThat(output.size()).isPositive();
+        smsSender.close();
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n")).hasSize(10);
+    }
+
+    @Test
+    public void sendShouldWriteMessagesLargerThanTheBuffer() {
+        // GIVEN
+        BufferedSMSSender smsSender = new BufferedSMSSender(Channels.newChannel(output), true, 16, 0);
+
+        // WHEN
+        smsSender.send(PHONE_NUMBER_1, PHONE_NUMBER_2, "MESSAGE");
+        smsSender.close();
+
+        // THEN
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8))
+                .isEqualTo(PHONE_NUMBER_1 + " " + PHONE_NUMBER_2 + " \"MESSAGE\"\n");
+    }
+}
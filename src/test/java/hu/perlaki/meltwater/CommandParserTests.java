@@ -0,0 +1,107 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CommandParserTests {
+
+    private final CommandParser commandParser = new CommandParser();
+    private final Command command = new Command();
+
+    @Test
+    public void parseShouldReadRegistration() {
+        // GIVEN
+        byte[] line = bytes("number1 +36991212321\r");
+
+        // WHEN
+        boolean parsed = commandParser.parse(line, 0, line.length, command);
+
+        // THEN
+        assertThat(parsed).isTrue();
+        assertThat(command.getType()).isEqualTo(Command.Type.REGISTER);
+        assertThat(command.getIdentifier()).isEqualTo("number1");
+        assertThat(command.getPhoneNumber()).isEqualTo("+36991212321");
+    }
+
+    @Test
+    public void parseShouldReadSubscriptions() {
+        // GIVEN
+        byte[] line = bytes("unsubscribe number1");
+
+        // WHEN
+        commandParser.parse(line, 0, line.length, command);
+
+        // THEN
+        assertThat(command.getType()).isEqualTo(Command.Type.UNSUBSCRIBE);
+        assertThat(command.getIdentifier()).isEqualTo("number1");
+    }
+
+    @Test
+    public void parseShouldReadGroupPatterns() {
+        // GIVEN
+        byte[] line = bytes("group1 +3699123* +36*");
+
+        // WHEN
+        commandParser.parse(line, 0, line.length, command);
+
+        // THEN
+        assertThat(command.getType()).isEqualTo(Command.Type.GROUP);
+        assertThat(command.getIdentifier()).isEqualTo("group1");
+        assertThat(command.getTargets()).containsExactly("+3699123*", "+36*");
+    }
+
+    @Test
+    public void parseShouldReadMessageFromTheMiddleOfABuffer() {
+        // GIVEN
+        byte[] buffer = bytes("number1 +36991212321\nmessage number1 number2,group1 \"Hi Ann, pub?\"\n");
+        int from = 21;
+        int to = buffer.length - 1;
+
+        // WHEN
+        commandParser.parse(buffer, from, to, command);
+
+        // THEN
+        assertThat(command.getType()).isEqualTo(Command.Type.MESSAGE);
+        assertThat(command.getIdentifier()).isEqualTo("number1");
+        assertThat(command.getTargets()).containsExactly("number2", "group1");
+        assertThat(command.getMessage()).isEqualTo("Hi Ann, pub?");
+    }
+
+    @Test
+    public void parseShouldResolveNumberReceiversToHandles() {
+        // GIVEN
+        IdentifierRegistry identifierRegistry = new IdentifierRegistry();
+        int sender = identifierRegistry.register("number1", PhoneNumberCodec.encode("+36991212321"));
+        int receiver = identifierRegistry.register("number2", PhoneNumberCodec.encode("+36991212322"));
+        byte[] line = bytes("message number1 number2,number9 \"Hi\"");
+
+        // WHEN
+        new CommandParser(identifierRegistry).parse(line, 0, line.length, command);
+
+        // THEN
+        assertThat(command.getIdentifierHandle()).isEqualTo(sender);
+        assertThat(command.getIdentifier()).isNull();
+        assertThat(command.getTargets()).containsExactly(null, null);
+        assertThat(command.getTargetHandle(0)).isEqualTo(receiver);
+        assertThat(command.getTargetHandle(1)).isEqualTo(IdentifierRegistry.NO_HANDLE);
+    }
+
+    @Test
+    public void parseShouldIgnoreEmptyLines() {
+        // GIVEN
+        byte[] line = bytes("  \r");
+
+        // WHEN
+        boolean parsed = commandParser.parse(line, 0, line.length, command);
+
+        // THEN
+        assertThat(parsed).isFalse();
+    }
+
+    private static byte[] bytes(String line) {
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class CommandPipelineTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void processShouldDeliverTheSameMessagesInTheSameOrderAsInputProcessor() throws IOException {
+        // GIVEN
+        WorkloadGenerator.Workload workload = new WorkloadGenerator.Workload();
+        workload.setNumbers(500);
+        workload.setGroups(5);
+        workload.setMessages(5000);
+        workload.setBroadcastRatio(0.002);
+        Path inputPath = temporaryFolder.getRoot().toPath().resolve("workload.txt");
+        new WorkloadGenerator(workload).generate(inputPath);
+
+        List<String> sequentialDeliveries = new ArrayList<>();
+        new InputProcessor(new SMSCenter(recordingSender(sequentialDeliveries)), inputPath).process();
+
+        // WHEN
+        List<String> pipelinedDeliveries = Collections.synchronizedList(new ArrayList<>());
+        RingBufferSMSSender smsSender = new RingBufferSMSSender(recordingSender(pipelinedDeliveries), 64,
+                WaitStrategy.YIELD);
+        new CommandPipeline(new SMSCenter(smsSender), SMSMetrics.NONE, 64, WaitStrategy.YIELD).process(inputPath);
+        smsSender.close();
+
+        // THEN
+        assertThat(pipelinedDeliveries).hasSize(sequentialDeliveries.size()).isEqualTo(sequentialDeliveries);
+    }
+
+    @Test
+    public void processShouldStopAtTheFailingCommand() throws IOException {
+        // GIVEN
+        Path inputPath = temporaryFolder.newFile("input.txt").toPath();
+        Files.write(inputPath, ("number1 +36991212321\n"
+                + "number2 +36123456789\n"
+                + "subscribe number1\n"
+                + "subscribe number2\n"
+                + "message number1 number2 \"first\"\n"
+                + "message number3 number2 \"unregistered sender\"\n"
+                + "message number1 number2 \"after the error\"\n").getBytes(StandardCharsets.UTF_8));
+        List<String> deliveries = Collections.synchronizedList(new ArrayList<>());
+
+        // WHEN
+        Throwable thrown = catchThrowable(() -> new CommandPipeline(new SMSCenter(recordingSender(deliveries)),
+                SMSMetrics.NONE, 2, WaitStrategy.PARK).process(inputPath));
+
+        // THEN
+        assertThat(thrown).isInstanceOf(RuntimeException.class);
+        assertThat(deliveries).containsExactly("+36123456789 first");
+    }
+
+    private static SMSSender recordingSender(List<String> deliveries) {
+        return (sender, receiver, message) -> deliveries.add(receiver + " " + message);
+    }
+}
@@ -0,0 +1,126 @@
+package hu.perlaki.meltwater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CommandServerTests {
+
+    private final List<String> deliveries = Collections.synchronizedList(new ArrayList<>());
+    private final SMSCenter smsCenter = new SMSCenter((sender, receiver, message) -> {
+        if(message.equals("Unsendable")) {
+            throw new IllegalStateException();
+        }
+        deliveries.add(receiver + " " + message);
+    });
+
+    private CommandServer commandServer;
+
+    @Before
+    public void setup() {
+        commandServer = new CommandServer(smsCenter, new InetSocketAddress("127.0.0.1", 0), SMSMetrics.NONE, 64);
+        commandServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        commandServer.close();
+    }
+
+    @Test
+    public void serverShouldAcknowledgePipelinedCommandsInOrder() throws IOException {
+        // GIVEN
+        String commands = "number1 +36991212321\n"
+                + "number2 +36123456789\n"
+                + "subscribe number1\n"
+                + "subscribe number2\n"
+                + "message number9 number2 \"Unknown sender\"\n"
+                + "message number1 number2 \"" + String.join("", Collections.nCopies(20, "Long message ")) + "\"\n"
+                + "message number1 number2 \"Hi\"";
+
+        // WHEN
+        List<String> responses = send(commands);
+
+        // THEN
+        assertThat(responses).contains("ERR Sender is not registered!");
+        assertThat(responses.subList(0, responses.indexOf("ERR Sender is not registered!")))
+                .allMatch(response -> response.startsWith("OK "));
+        assertThat(acknowledgedLines(responses)).isEqualTo(7);
+        assertThat(deliveries).hasSize(2).last().isEqualTo("+36123456789 Hi");
+    }
+
+    @Test
+    public void serverShouldReplyWithExceptionTypeWhenThereIsNoMessage() throws IOException {
+        // GIVEN
+        String commands = "number1 +36991212321\n"
+                + "subscribe number1\n"
+                + "message number1 number1 \"Unsendable\"\n";
+
+        // WHEN
+        List<String> responses = send(commands);
+
+        // THEN
+        assertThat(responses).containsExactly("OK 2", "ERR java.lang.IllegalStateException");
+    }
+
+    @Test
+    public void serverShouldApplyCommandsOfConcurrentProducers() throws Exception {
+        // GIVEN
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<List<String>>> results = new ArrayList<>();
+
+        // WHEN
+        for (int producer = 0; producer < 4; producer++) {
+            StringBuilder commands = new StringBuilder();
+            for (int i = 0; i < 250; i++) {
+                commands.append(String.format("number%d-%d +3699%07d\n", producer, i, producer * 1000 + i));
+            }
+            results.add(producers.submit(() -> send(commands.toString())));
+        }
+
+        // THEN
+        for (Future<List<String>> result : results) {
+            assertThat(acknowledgedLines(result.get())).isEqualTo(250);
+        }
+        producers.shutdown();
+        assertThat(smsCenter.registeredNumbers).hasSize(1000);
+    }
+
+    private List<String> send(String commands) throws IOException {
+        try(Socket socket = new Socket("127.0.0.1", commandServer.getPort())) {
+            OutputStream output = socket.getOutputStream();
+            output.write(commands.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            socket.shutdownOutput();
+
+            List<String> responses = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (String response = reader.readLine(); response != null; response = reader.readLine()) {
+                responses.add(response);
+            }
+            return responses;
+        }
+    }
+
+    private static int acknowledgedLines(List<String> responses) {
+        return responses.stream()
+                .mapToInt(response -> response.startsWith("OK ") ? Integer.parseInt(response.substring(3)) : 1)
+                .sum();
+    }
+}
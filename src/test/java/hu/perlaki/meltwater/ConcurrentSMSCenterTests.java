@@ -0,0 +1,190 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ConcurrentSMSCenterTests {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int NUMBERS_PER_THREAD = 200;
+    private static final int ROUNDS = 20;
+    private static final String SENDER_IDENTIFIER = "number0";
+    private static final String SENDER_PHONE_NUMBER = "+3610000000";
+
+    private final AtomicLong deliveries = new AtomicLong();
+    private final SMSSender countingSender = (sender, receiver, message) -> deliveries.incrementAndGet();
+
+    @Test
+    public void registerShouldAcceptEachIdentifierOnlyOnce() throws Exception {
+        // GIVEN
+        ConcurrentSMSCenter smsCenter = new ConcurrentSMSCenter(countingSender);
+        AtomicInteger rejected = new AtomicInteger();
+
+        // WHEN
+        runConcurrently(thread -> {
+            for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+                try {
+                    smsCenter.register("number" + i, phoneNumber(thread, i));
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        // THEN
+        assertThat(smsCenter.registeredNumbers).hasSize(NUMBERS_PER_THREAD);
+        assertThat(rejected.get()).isEqualTo((THREADS - 1) * NUMBERS_PER_THREAD);
+    }
+
+    @Test
+    public void heldMessagesShouldBeDeliveredExactlyOnce() throws Exception {
+        // GIVEN
+        ConcurrentSMSCenter smsCenter = new ConcurrentSMSCenter(countingSender);
+        smsCenter.register(SENDER_IDENTIFIER, SENDER_PHONE_NUMBER);
+        smsCenter.subscribe(SENDER_IDENTIFIER);
+        for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+            smsCenter.register(identifier(0, i), phoneNumber(0, i));
+        }
+
+        // WHEN
+        runConcurrently(thread -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+                    if(thread % 2 == 0) {
+                        smsCenter.sendMessage(SENDER_IDENTIFIER, identifier(0, i), "MESSAGE");
+                    } else if(round % 2 == 0) {
+                        smsCenter.subscribe(identifier(0, i));
+                    } else {
+                        smsCenter.unsubscribe(identifier(0, i));
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+            smsCenter.subscribe(identifier(0, i));
+        }
+
+        // THEN
+        long sentMessages = (long) ((THREADS + 1) / 2) * ROUNDS * NUMBERS_PER_THREAD;
+        assertThat(deliveries.get()).isEqualTo(sentMessages);
+        assertThat(smsCenter.heldMessages.statistics().getHeldMessages()).isZero();
+    }
+
+    @Test
+    public void groupMembersShouldFollowConcurrentSubscriptions() throws Exception {
+        // GIVEN
+        ConcurrentSMSCenter smsCenter = new ConcurrentSMSCenter(countingSender);
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+                smsCenter.register(identifier(thread, i), phoneNumber(thread, i));
+            }
+        }
+
+        // WHEN
+        runConcurrently(thread -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                if(thread == 0) {
+                    smsCenter.createGroup("group1", asList("+361*", "+3620*"));
+                }
+                for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+                    if(round % 2 == 0 || i % 2 == 0) {
+                        smsCenter.subscribe(identifier(thread, i));
+                    } else {
+                        smsCenter.unsubscribe(identifier(thread, i));
+                    }
+                }
+            }
+        });
+
+        // THEN
+        assertThat(smsCenter.subscribedNumbers).hasSize(THREADS * NUMBERS_PER_THREAD / 2);
+        for (String phoneNumber : smsCenter.subscribedNumbers) {
+            boolean matches = phoneNumber.startsWith("+361") || phoneNumber.startsWith("+3620");
+            assertThat(smsCenter.groupMembers.get("group1").contains(phoneNumber)).isEqualTo(matches);
+        }
+        assertThat(smsCenter.subscribedNumbers).containsAll(smsCenter.groupMembers.get("group1"));
+    }
+
+    @Test
+    public void registerShouldRejectInvalidPhoneNumber() {
+        // GIVEN
+        ConcurrentSMSCenter smsCenter = new ConcurrentSMSCenter(countingSender);
+
+        // WHEN
+        Throwable thrown = catchThrowable(() -> smsCenter.register("number1", "+36abc"));
+
+        // THEN
+        assertThat(thrown).hasMessageStartingWith("Phone number must be");
+        assertThat(smsCenter.registeredNumbers).isEmpty();
+    }
+
+    @Test
+    public void concurrentChurnShouldDeliverEveryMessage() throws Exception {
+        // GIVEN
+        ConcurrentSMSCenter smsCenter = new ConcurrentSMSCenter(countingSender);
+        smsCenter.register(SENDER_IDENTIFIER, SENDER_PHONE_NUMBER);
+        smsCenter.subscribe(SENDER_IDENTIFIER);
+        int operationsPerThread = 10_000;
+
+        // WHEN
+        runConcurrently(thread -> {
+            for (int i = 0; i < operationsPerThread; i++) {
+                String identifier = identifier(thread, i % NUMBERS_PER_THREAD);
+                if(i < NUMBERS_PER_THREAD) {
+                    smsCenter.register(identifier, phoneNumber(thread, i));
+                }
+                smsCenter.subscribe(identifier);
+                smsCenter.sendMessage(SENDER_IDENTIFIER, identifier, "MESSAGE");
+                smsCenter.unsubscribe(identifier);
+            }
+        });
+
+        // THEN
+        assertThat(deliveries.get()).isEqualTo((long) THREADS * operationsPerThread);
+        assertThat(smsCenter.heldMessages.statistics().getHeldMessages()).isZero();
+        assertThat(smsCenter.subscribedNumbers).containsExactly(SENDER_PHONE_NUMBER);
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final int threadIndex = thread;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    worker.run(threadIndex);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String identifier(int thread, int index) {
+        return "number" + thread + "_" + index;
+    }
+
+    private static String phoneNumber(int thread, int index) {
+        return String.format("+36%02d%07d", thread, index);
+    }
+}
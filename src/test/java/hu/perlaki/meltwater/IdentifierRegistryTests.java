@@ -0,0 +1,94 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdentifierRegistryTests {
+
+    @Test
+    public void registryShouldBehaveLikeHashMapUnderRandomOperations() {
+        // GIVEN
+        Random random = new Random(42);
+        IdentifierRegistry registeredNumbers = new IdentifierRegistry();
+        Map<String, String> expected = new HashMap<>();
+
+        // WHEN
+        for (int i = 0; i < 200_000; i++) {
+            String identifier = "number" + random.nextInt(5_000);
+            if(random.nextInt(3) == 0) {
+                assertThat(registeredNumbers.remove(identifier)).isEqualTo(expected.remove(identifier));
+            } else {
+                String phoneNumber = String.format("+3699%07d", random.nextInt(10_000_000));
+                assertThat(registeredNumbers.put(identifier, phoneNumber)).isEqualTo(expected.put(identifier, phoneNumber));
+            }
+        }
+
+        // THEN
+        assertThat(registeredNumbers).isEqualTo(expected);
+        assertThat(registeredNumbers.handleOf("unknown")).isEqualTo(IdentifierRegistry.NO_HANDLE);
+        for (String identifier : expected.keySet()) {
+            byte[] bytes = ("message " + identifier + " ").getBytes(StandardCharsets.UTF_8);
+            int handle = registeredNumbers.handleOf(bytes, 8, bytes.length - 1);
+
+            assertThat(handle).isEqualTo(registeredNumbers.handleOf(identifier));
+            assertThat(registeredNumbers.identifierOf(handle)).isEqualTo(identifier);
+            assertThat(PhoneNumberCodec.decode(registeredNumbers.phoneNumberOf(handle))).isEqualTo(expected.get(identifier));
+        }
+    }
+
+    @Test
+    public void setSubscribedShouldFlagEveryIdentifierOfThePhoneNumber() {
+        // GIVEN
+        IdentifierRegistry registeredNumbers = new IdentifierRegistry();
+        long phoneNumber = PhoneNumberCodec.encode("+36991212321");
+        int first = registeredNumbers.register("number1", phoneNumber);
+        int second = registeredNumbers.register("number2", phoneNumber);
+        int other = registeredNumbers.register("number3", PhoneNumberCodec.encode("+36991212322"));
+
+        // WHEN
+        registeredNumbers.setSubscribed(phoneNumber, true);
+        int late = registeredNumbers.register("number4", phoneNumber);
+
+        // THEN
+        List<Integer> handles = new ArrayList<>();
+        registeredNumbers.forEachHandleOf(phoneNumber, handles::add);
+        assertThat(handles).containsExactlyInAnyOrder(first, second, late);
+        assertThat(registeredNumbers.isSubscribed(first)).isTrue();
+        assertThat(registeredNumbers.isSubscribed(second)).isTrue();
+        assertThat(registeredNumbers.isSubscribed(late)).isTrue();
+        assertThat(registeredNumbers.isSubscribed(other)).isFalse();
+
+        registeredNumbers.setSubscribed(phoneNumber, false);
+        assertThat(registeredNumbers.isSubscribed(first)).isFalse();
+        assertThat(registeredNumbers.isSubscribed(late)).isFalse();
+    }
+
+    @Test
+    public void removedHandlesShouldBeReused() {
+        // GIVEN
+        IdentifierRegistry registeredNumbers = new IdentifierRegistry();
+        long phoneNumber = PhoneNumberCodec.encode("+36991212321");
+        registeredNumbers.register("number1", phoneNumber);
+        int removed = registeredNumbers.register("number2", phoneNumber);
+
+        // WHEN
+        registeredNumbers.remove("number2");
+        int reused = registeredNumbers.register("number3", PhoneNumberCodec.encode("+36991212322"));
+
+        // THEN
+        assertThat(reused).isEqualTo(removed);
+        assertThat(registeredNumbers.handleOf("number2")).isEqualTo(IdentifierRegistry.NO_HANDLE);
+        assertThat(registeredNumbers.identifierOf(reused)).isEqualTo("number3");
+        List<Integer> handles = new ArrayList<>();
+        registeredNumbers.forEachHandleOf(phoneNumber, handles::add);
+        assertThat(handles).containsExactly(registeredNumbers.handleOf("number1"));
+    }
+}
@@ -0,0 +1,98 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InputFollowerTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> deliveries = Collections.synchronizedList(new ArrayList<>());
+    private final SMSSender recordingSender = (sender, receiver, message) -> deliveries.add(receiver + " " + message);
+
+    @Test
+    public void catchUpShouldProcessOnlyCompleteAppendedLines() throws IOException {
+        // GIVEN
+        Path input = temporaryFolder.newFile("input.txt").toPath();
+        SMSCenter smsCenter = new SMSCenter(recordingSender);
+        InputFollower inputFollower = follower(smsCenter, input);
+        append(input, "number1 +36991212321\nnumber2 +36123456789\nsubscribe num");
+
+        // WHEN
+        inputFollower.catchUp();
+        append(input, "ber1\nsubscribe number2\n");
+        inputFollower.catchUp();
+
+        // THEN
+        assertThat(smsCenter.subscribedNumbers).containsExactlyInAnyOrder("+36991212321", "+36123456789");
+        assertThat(inputFollower.offsetOf(input)).isEqualTo(Files.size(input));
+    }
+
+    @Test
+    public void followerShouldResumeFromTheCheckpoint() throws IOException {
+        // GIVEN
+        Path input = temporaryFolder.newFile("input.txt").toPath();
+        append(input, "number1 +36991212321\nnumber2 +36123456789\nsubscribe number1\nsubscribe number2\n");
+        InputFollower previousFollower = follower(new SMSCenter(recordingSender), input);
+        previousFollower.catchUp();
+        previousFollower.checkpoint();
+        append(input, "message number1 number2 \"After restart\"\n");
+
+        // WHEN
+        SMSCenter smsCenter = new SMSCenter(recordingSender);
+        smsCenter.register("number1", "+36991212321");
+        smsCenter.register("number2", "+36123456789");
+        smsCenter.subscribe("number1");
+        smsCenter.subscribe("number2");
+        follower(smsCenter, input).catchUp();
+
+        // THEN
+        assertThat(deliveries).containsExactly("+36123456789 After restart");
+    }
+
+    @Test
+    public void followShouldPickUpFilesCreatedInAWatchedDirectory() throws Exception {
+        // GIVEN
+        Path directory = temporaryFolder.newFolder("inputs").toPath();
+        SMSCenter smsCenter = new SMSCenter(recordingSender);
+        InputFollower inputFollower = follower(smsCenter, directory);
+        Thread followingThread = new Thread(inputFollower::follow);
+        followingThread.start();
+
+        // WHEN
+        append(directory.resolve("commands-1.txt"), "number1 +36991212321\n");
+        append(directory.resolve("commands-2.txt"), "number2 +36123456789\n");
+
+        // THEN
+        long deadline = System.currentTimeMillis() + 10_000;
+        while(smsCenter.registeredNumbers.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        inputFollower.close();
+        followingThread.join();
+        assertThat(smsCenter.registeredNumbers).containsOnlyKeys("number1", "number2");
+        assertThat(temporaryFolder.getRoot().toPath().resolve("input.checkpoint")).exists();
+    }
+
+    private InputFollower follower(SMSService smsCenter, Path input) {
+        return new InputFollower(smsCenter, SMSMetrics.NONE, Collections.singletonList(input),
+                temporaryFolder.getRoot().toPath().resolve("input.checkpoint"), 50);
+    }
+
+    private static void append(Path input, String lines) throws IOException {
+        Files.write(input, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
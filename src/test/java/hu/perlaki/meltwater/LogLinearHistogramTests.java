@@ -0,0 +1,52 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LogLinearHistogramTests {
+
+    @Test
+    public void indexOfShouldBeContiguousAndRoundTrip() {
+        // GIVEN
+        long[] values = {0, 1, 63, 64, 65, 127, 128, 1_000, 123_456_789, Long.MAX_VALUE};
+
+        // WHEN / THEN
+        for (long value : values) {
+            int index = LogLinearHistogram.indexOf(value);
+            assertThat(LogLinearHistogram.highestValueOf(index)).isGreaterThanOrEqualTo(value);
+            if(index > 0) {
+                assertThat(LogLinearHistogram.highestValueOf(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void valueAtPercentileShouldStayWithinRelativePrecision() {
+        // GIVEN
+        LogLinearHistogram histogram = new LogLinearHistogram();
+
+        // WHEN
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        // THEN
+        assertThat(histogram.count()).isEqualTo(100_000);
+        assertThat(histogram.max()).isEqualTo(100_000_000);
+        assertThat((double) histogram.valueAtPercentile(50)).isCloseTo(50_000_000, within(50_000_000 / 32.0));
+        assertThat((double) histogram.valueAtPercentile(99)).isCloseTo(99_000_000, within(99_000_000 / 32.0));
+        assertThat(histogram.valueAtPercentile(100)).isEqualTo(100_000_000);
+    }
+
+    @Test
+    public void valueAtPercentileShouldBeZeroWhenEmpty() {
+        // GIVEN
+        LogLinearHistogram histogram = new LogLinearHistogram();
+
+        // WHEN / THEN
+        assertThat(histogram.valueAtPercentile(99)).isZero();
+        assertThat(histogram.mean()).isZero();
+    }
+}
@@ -0,0 +1,91 @@
+package hu.perlaki.meltwater;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelFanOutTests {
+
+    private final ParallelFanOut fanOut = new ParallelFanOut(4, 100);
+
+    @After
+    public void tearDown() {
+        fanOut.close();
+    }
+
+    @Test
+    public void forEachShouldVisitEveryRecipientExactlyOnce() {
+        // GIVEN
+        PhoneNumberSet recipients = new PhoneNumberSet();
+        for (int i = 0; i < 50_000; i++) {
+            recipients.add(String.format("+3699%07d", i * 7));
+        }
+        Map<Long, AtomicInteger> visits = new ConcurrentHashMap<>();
+        Map<String, Boolean> threads = new ConcurrentHashMap<>();
+
+        // WHEN
+        fanOut.forEach(recipients, phoneNumber -> {
+            visits.computeIfAbsent(phoneNumber, key -> new AtomicInteger()).incrementAndGet();
+            threads.put(Thread.currentThread().getName(), true);
+        });
+
+        // THEN
+        assertThat(visits).hasSize(recipients.size());
+        assertThat(visits.values()).allMatch(count -> count.get() == 1);
+        assertThat(threads).doesNotContainKey(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void forEachShouldVisitOnlyTheGivenSlots() {
+        // GIVEN
+        PhoneNumberSet numbers = new PhoneNumberSet();
+        for (int i = 0; i < 50_000; i++) {
+            numbers.add(String.format("+3699%07d", i * 7));
+        }
+        BitSet slots = new BitSet(numbers.slots());
+        Set<Long> expected = new HashSet<>();
+        numbers.forEachEncoded(phoneNumber -> {
+            if(phoneNumber % 3 == 0) {
+                slots.set(numbers.slotOfEncoded(phoneNumber));
+                expected.add(phoneNumber);
+            }
+        });
+        Map<Long, AtomicInteger> visits = new ConcurrentHashMap<>();
+        Map<String, Boolean> threads = new ConcurrentHashMap<>();
+
+        // WHEN
+        fanOut.forEach(numbers, slots, slots.cardinality(), phoneNumber -> {
+            visits.computeIfAbsent(phoneNumber, key -> new AtomicInteger()).incrementAndGet();
+            threads.put(Thread.currentThread().getName(), true);
+        });
+
+        // THEN
+        assertThat(visits.keySet()).isEqualTo(expected);
+        assertThat(visits.values()).allMatch(count -> count.get() == 1);
+        assertThat(threads).doesNotContainKey(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void forEachShouldStayOnTheCallingThreadBelowTheThreshold() {
+        // GIVEN
+        PhoneNumberSet recipients = new PhoneNumberSet();
+        for (int i = 0; i < 99; i++) {
+            recipients.add("+3699" + i);
+        }
+        Map<String, Boolean> threads = new ConcurrentHashMap<>();
+
+        // WHEN
+        fanOut.forEach(recipients, phoneNumber -> threads.put(Thread.currentThread().getName(), true));
+
+        // THEN
+        assertThat(threads).containsOnlyKeys(Thread.currentThread().getName());
+    }
+}
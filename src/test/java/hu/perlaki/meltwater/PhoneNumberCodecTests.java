@@ -0,0 +1,73 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PhoneNumberCodecTests {
+
+    private static final List<String> PHONE_NUMBERS = Arrays.asList(
+            "+0", "+00", "+001", "+36", "+360", "+36123456789", "+3612345678", "+44123456789",
+            "0", "0036123456789", "36", "99999999999999999", "+99999999999999999");
+
+    @Test
+    public void decodeShouldRoundTripLeadingZerosAndPlusSign() {
+        // GIVEN
+
+        // WHEN / THEN
+        for (String phoneNumber : PHONE_NUMBERS) {
+            long encoded = PhoneNumberCodec.encode(phoneNumber);
+            assertThat(encoded).isPositive();
+            assertThat(PhoneNumberCodec.decode(encoded)).isEqualTo(phoneNumber);
+            assertThat(PhoneNumberCodec.length(encoded)).isEqualTo(phoneNumber.length());
+            for (int i = 0; i < phoneNumber.length(); i++) {
+                assertThat(PhoneNumberCodec.charAt(encoded, i)).isEqualTo(phoneNumber.charAt(i));
+            }
+        }
+    }
+
+    @Test
+    public void encodeShouldKeepLexicographicOrder() {
+        // GIVEN
+
+        // WHEN / THEN
+        for (String first : PHONE_NUMBERS) {
+            for (String second : PHONE_NUMBERS) {
+                assertThat(Long.signum(Long.compare(PhoneNumberCodec.encode(first), PhoneNumberCodec.encode(second))))
+                        .as("%s <=> %s", first, second)
+                        .isEqualTo(Integer.signum(first.compareTo(second)));
+            }
+        }
+    }
+
+    @Test
+    public void prefixShouldMatchLikeStartsWith() {
+        // GIVEN
+        List<String> trimmedPhonePatterns = Arrays.asList("", "+", "+3", "+36", "+360", "+361", "+3612345678", "0", "+36a");
+
+        // WHEN / THEN
+        for (String trimmedPhonePattern : trimmedPhonePatterns) {
+            PhoneNumberCodec.Prefix prefix = PhoneNumberCodec.prefix(trimmedPhonePattern);
+            for (String phoneNumber : PHONE_NUMBERS) {
+                assertThat(prefix.matches(PhoneNumberCodec.encode(phoneNumber)))
+                        .as("%s starts with %s", phoneNumber, trimmedPhonePattern)
+                        .isEqualTo(phoneNumber.startsWith(trimmedPhonePattern));
+            }
+        }
+    }
+
+    @Test
+    public void encodeShouldRejectInvalidPhoneNumbers() {
+        // GIVEN
+
+        // WHEN / THEN
+        assertThatThrownBy(() -> PhoneNumberCodec.encode("")).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> PhoneNumberCodec.encode("+")).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> PhoneNumberCodec.encode("+36-1-234")).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> PhoneNumberCodec.encode("+123456789012345678")).isInstanceOf(RuntimeException.class);
+    }
+}
@@ -0,0 +1,36 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PhoneNumberSetTests {
+
+    @Test
+    public void setShouldBehaveLikeHashSetUnderRandomOperations() {
+        // GIVEN
+        Random random = new Random(42);
+        PhoneNumberSet phoneNumbers = new PhoneNumberSet();
+        Set<String> expected = new HashSet<>();
+
+        // WHEN
+        for (int i = 0; i < 200_000; i++) {
+            String phoneNumber = String.format("+3699%04d", random.nextInt(5_000));
+            if(random.nextInt(3) == 0) {
+                assertThat(phoneNumbers.remove(phoneNumber)).isEqualTo(expected.remove(phoneNumber));
+            } else {
+                assertThat(phoneNumbers.add(phoneNumber)).isEqualTo(expected.add(phoneNumber));
+            }
+        }
+
+        // THEN
+        assertThat(phoneNumbers).hasSameSizeAs(expected).containsExactlyInAnyOrderElementsOf(expected);
+        for (String phoneNumber : expected) {
+            assertThat(phoneNumbers.containsEncoded(PhoneNumberCodec.encode(phoneNumber))).isTrue();
+        }
+    }
+}
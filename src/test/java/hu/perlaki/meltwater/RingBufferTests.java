@@ -0,0 +1,87 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RingBufferTests {
+
+    private static final int EVENTS = 100_000;
+
+    @Test
+    public void consumeShouldSeeEveryEventInOrderWithEveryWaitStrategy() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            // GIVEN
+            RingBuffer<long[]> ring = new RingBuffer<>(64, () -> new long[1], waitStrategy);
+            List<Long> consumed = new ArrayList<>();
+            Thread consumer = new Thread(() -> ring.consume(event -> consumed.add(event[0])));
+            consumer.start();
+
+            // WHEN
+            for (long i = 0; i < EVENTS; i++) {
+                ring.claim()[0] = i;
+                ring.publish();
+            }
+            ring.close();
+            consumer.join();
+
+            // THEN
+            assertThat(consumed).hasSize(EVENTS);
+            for (int i = 0; i < EVENTS; i++) {
+                assertThat(consumed.get(i)).isEqualTo(i);
+            }
+        }
+    }
+
+    @Test
+    public void claimShouldReuseSlotsAndReturnSameSlotUntilPublished() {
+        // GIVEN
+        RingBuffer<long[]> ring = new RingBuffer<>(2, () -> new long[1], WaitStrategy.BUSY_SPIN);
+        List<long[]> drained = new ArrayList<>();
+
+        // WHEN
+        long[] first = ring.claim();
+        long[] claimedAgain = ring.claim();
+        ring.publish();
+        long[] second = ring.claim();
+        ring.publish();
+        int drainedCount = ring.drain(drained::add);
+        long[] third = ring.claim();
+
+        // THEN
+        assertThat(claimedAgain).isSameAs(first);
+        assertThat(second).isNotSameAs(first);
+        assertThat(drainedCount).isEqualTo(2);
+        assertThat(drained).containsExactly(first, second);
+        assertThat(third).isSameAs(first);
+        assertThat(ring.drain(drained::add)).isZero();
+    }
+
+    @Test
+    public void claimShouldFailOnFullRingAfterHalt() {
+        // GIVEN
+        RingBuffer<long[]> ring = new RingBuffer<>(1, () -> new long[1], WaitStrategy.PARK);
+        ring.claim();
+        ring.publish();
+
+        // WHEN
+        ring.halt();
+        Throwable thrown = catchThrowable(ring::claim);
+
+        // THEN
+        assertThat(thrown).isInstanceOf(RuntimeException.class).hasMessage("The consumer of the ring buffer has stopped");
+    }
+
+    @Test
+    public void constructorShouldRejectCapacityNotPowerOfTwo() {
+        // WHEN
+        Throwable thrown = catchThrowable(() -> new RingBuffer<>(1000, Object::new, WaitStrategy.YIELD));
+
+        // THEN
+        assertThat(thrown).hasMessageContaining("power of two");
+    }
+}
@@ -0,0 +1,185 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.BDDMockito.then;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SMSCenterPersistenceTests {
+
+    private static final String MESSAGE = "MESSAGE";
+    private static final String MESSAGE_2 = "MESSAGE 2";
+    private static final String IDENTIFIER_1 = "number1";
+    private static final String IDENTIFIER_2 = "number2";
+    private static final String PHONE_NUMBER_1 = "+36991212321";
+    private static final String PHONE_NUMBER_2 = "+36123456789";
+    private static final String GROUP_IDENTIFIER = "group1";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private SMSSender smsSender;
+
+    @Test
+    public void openShouldRestoreStateFromWriteAheadLog() throws IOException {
+        // GIVEN
+        Path stateDirectory = temporaryFolder.newFolder().toPath();
+        SMSCenter smsCenter = open(stateDirectory, 1000);
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.createGroup(GROUP_IDENTIFIER, singletonList("+369*"));
+        smsCenter.sendMessage(IDENTIFIER_1, IDENTIFIER_2, MESSAGE);
+        smsCenter.close();
+
+        // WHEN
+        SMSCenter restored = open(stateDirectory, 1000);
+
+        // THEN
+        assertThat(restored.registeredNumbers)
+                .containsEntry(IDENTIFIER_1, PHONE_NUMBER_1)
+                .containsEntry(IDENTIFIER_2, PHONE_NUMBER_2);
+        assertThat(restored.subscribedNumbers).containsExactly(PHONE_NUMBER_1);
+        assertThat(restored.groupMembers.get(GROUP_IDENTIFIER)).containsExactly(PHONE_NUMBER_1);
+        assertThat(restored.heldMessages.peek(PHONE_NUMBER_2)).containsExactly(new HeldMessage(PHONE_NUMBER_1, MESSAGE));
+        restored.close();
+    }
+
+    @Test
+    public void openShouldRestoreSnapshotAndReplayLaterRecords() throws IOException {
+        // GIVEN
+        Path stateDirectory = temporaryFolder.newFolder().toPath();
+        SMSCenter smsCenter = open(stateDirectory, 3);
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.subscribe(IDENTIFIER_2);
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList("+369*", "+36123*"));
+        smsCenter.close();
+
+        // WHEN
+        SMSCenter restored = open(stateDirectory, 3);
+
+        // THEN
+        assertThat(stateDirectory.toFile().list()).containsExactlyInAnyOrder("snapshot-1.bin", "wal-1.log");
+        assertThat(restored.subscribedNumbers).containsExactlyInAnyOrder(PHONE_NUMBER_1, PHONE_NUMBER_2);
+        assertThat(restored.groupMembers.get(GROUP_IDENTIFIER)).containsExactlyInAnyOrder(PHONE_NUMBER_1, PHONE_NUMBER_2);
+        restored.close();
+    }
+
+    @Test
+    public void openShouldNotRestoreDeliveredHeldMessages() throws IOException {
+        // GIVEN
+        Path stateDirectory = temporaryFolder.newFolder().toPath();
+        SMSCenter smsCenter = open(stateDirectory, 1000);
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.sendMessage(IDENTIFIER_1, IDENTIFIER_2, MESSAGE);
+        smsCenter.subscribe(IDENTIFIER_2);
+        smsCenter.unsubscribe(IDENTIFIER_2);
+        smsCenter.sendMessage(IDENTIFIER_1, IDENTIFIER_2, MESSAGE_2);
+        smsCenter.close();
+
+        // WHEN
+        SMSCenter restored = open(stateDirectory, 1000);
+        restored.subscribe(IDENTIFIER_2);
+
+        // THEN
+        then(smsSender).should().send(PHONE_NUMBER_1, PHONE_NUMBER_2, MESSAGE);
+        then(smsSender).should().send(PHONE_NUMBER_1, PHONE_NUMBER_2, MESSAGE_2);
+        then(smsSender).shouldHaveNoMoreInteractions();
+        restored.close();
+    }
+
+    @Test
+    public void openShouldIgnoreTornRecordAtEndOfLog() throws IOException {
+        // GIVEN
+        Path stateDirectory = temporaryFolder.newFolder().toPath();
+        SMSCenter smsCenter = open(stateDirectory, 1000);
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        smsCenter.close();
+
+        File log = stateDirectory.resolve("wal-0.log").toFile();
+        try(RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        // WHEN
+        SMSCenter restored = open(stateDirectory, 1000);
+        restored.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        restored.close();
+
+        // THEN
+        SMSCenter reopened = open(stateDirectory, 1000);
+        assertThat(reopened.registeredNumbers)
+                .containsEntry(IDENTIFIER_1, PHONE_NUMBER_1)
+                .containsEntry(IDENTIFIER_2, PHONE_NUMBER_2);
+        reopened.close();
+    }
+
+    @Test
+    public void openShouldRestoreStateOfCenterThatWasNotClosed() throws IOException {
+        // GIVEN
+        Path stateDirectory = temporaryFolder.newFolder().toPath();
+        SMSCenter smsCenter = open(stateDirectory, 1000);
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.subscribe(IDENTIFIER_1);
+
+        // WHEN
+        SMSCenter restored = open(stateDirectory, 1000);
+
+        // THEN
+        assertThat(restored.registeredNumbers).containsEntry(IDENTIFIER_1, PHONE_NUMBER_1);
+        assertThat(restored.subscribedNumbers).containsExactly(PHONE_NUMBER_1);
+        restored.close();
+        smsCenter.close();
+    }
+
+    @Test
+    public void snapshotFailureShouldKeepWriteAheadLogInUse() throws IOException {
+        // GIVEN
+        Path stateDirectory = temporaryFolder.newFolder().toPath();
+        SMSCenter smsCenter = new SMSCenter(smsSender);
+        SMSCenterPersistence persistence = SMSCenterPersistence.open(stateDirectory, smsCenter, 1000, true);
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        // a directory in the way of the temporary snapshot file
+        Files.createDirectories(stateDirectory.resolve("snapshot-1.bin.tmp").resolve("blocked"));
+
+        // WHEN
+        Throwable failure = catchThrowable(persistence::snapshot);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+
+        // THEN
+        assertThat(failure).hasMessage("Snapshot could not be written");
+        SMSCenter restored = open(stateDirectory, 1000);
+        assertThat(restored.registeredNumbers)
+                .containsEntry(IDENTIFIER_1, PHONE_NUMBER_1)
+                .containsEntry(IDENTIFIER_2, PHONE_NUMBER_2);
+        restored.close();
+        smsCenter.close();
+    }
+
+    private SMSCenter open(Path stateDirectory, long snapshotInterval) {
+        SMSCenter smsCenter = new SMSCenter(smsSender);
+        SMSCenterPersistence.open(stateDirectory, smsCenter, snapshotInterval);
+        return smsCenter;
+    }
+}
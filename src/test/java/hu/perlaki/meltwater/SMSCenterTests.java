@@ -7,10 +7,17 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -248,11 +255,11 @@ public class SMSCenterTests {
         smsCenter.sendMessage(senderIdentifier, receiverIdentifier2, MESSAGE_3);
 
         // THEN
-        assertThat(smsCenter.heldMessages).containsKey(receiverPhoneNumber);
-        assertThat(smsCenter.heldMessages).containsKey(receiverPhoneNumber2);
-        assertThat(smsCenter.heldMessages.get(receiverPhoneNumber))
+        assertThat(smsCenter.heldMessages.depth(receiverPhoneNumber)).isEqualTo(2);
+        assertThat(smsCenter.heldMessages.depth(receiverPhoneNumber2)).isEqualTo(1);
+        assertThat(smsCenter.heldMessages.peek(receiverPhoneNumber))
                 .contains(new HeldMessage(senderPhoneNumber, MESSAGE), new HeldMessage(senderPhoneNumber, MESSAGE_2));
-        assertThat(smsCenter.heldMessages.get(receiverPhoneNumber2))
+        assertThat(smsCenter.heldMessages.peek(receiverPhoneNumber2))
                 .contains(new HeldMessage(senderPhoneNumber, MESSAGE_3));
         verifyZeroInteractions(smsSender);
     }
@@ -264,8 +271,8 @@ public class SMSCenterTests {
         String receiverIdentifier = IDENTIFIER_1;
         String receiverPhoneNumber = PHONE_NUMBER_2;
         smsCenter.registeredNumbers.put(receiverIdentifier, receiverPhoneNumber);
-        smsCenter.heldMessages.put(receiverPhoneNumber,
-                asList(new HeldMessage(senderPhoneNumber, MESSAGE), new HeldMessage(senderPhoneNumber, MESSAGE_2)));
+        smsCenter.heldMessages.hold(receiverPhoneNumber, new HeldMessage(senderPhoneNumber, MESSAGE));
+        smsCenter.heldMessages.hold(receiverPhoneNumber, new HeldMessage(senderPhoneNumber, MESSAGE_2));
 
         // WHEN
         smsCenter.subscribe(receiverIdentifier);
@@ -332,7 +339,7 @@ public class SMSCenterTests {
         smsCenter.registeredNumbers.put(receiverIdentifier2, receiverPhoneNumber2);
         smsCenter.subscribedNumbers.add(receiverPhoneNumber2);
 
-        smsCenter.groups.put(GROUP_IDENTIFIER, asList(TRIMMED_PHONE_PATTERN_1));
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_1));
 
         // WHEN
         smsCenter.sendGroupMessage(senderIdentifier, GROUP_IDENTIFIER, MESSAGE);
@@ -341,4 +348,198 @@ public class SMSCenterTests {
         then(smsSender).should().send(senderPhoneNumber, senderPhoneNumber, MESSAGE);
         then(smsSender).should().send(senderPhoneNumber, receiverPhoneNumber2, MESSAGE);
     }
+
+    @Test
+    public void sendGroupMessageShouldSendOnlyOnceOnOverlappingPatterns() {
+        // GIVEN
+        String senderIdentifier = IDENTIFIER_1;
+        String senderPhoneNumber = PHONE_NUMBER_1;
+        smsCenter.registeredNumbers.put(senderIdentifier, senderPhoneNumber);
+        smsCenter.subscribedNumbers.add(senderPhoneNumber);
+
+        String receiverIdentifier = IDENTIFIER_2;
+        String receiverPhoneNumber = PHONE_NUMBER_2;
+        smsCenter.registeredNumbers.put(receiverIdentifier, receiverPhoneNumber);
+        smsCenter.subscribedNumbers.add(receiverPhoneNumber);
+
+        String receiverIdentifier2 = IDENTIFIER_3;
+        String receiverPhoneNumber2 = PHONE_NUMBER_3;
+        smsCenter.registeredNumbers.put(receiverIdentifier2, receiverPhoneNumber2);
+        smsCenter.subscribedNumbers.add(receiverPhoneNumber2);
+
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_2, PHONE_PATTERN_1, "+36*"));
+
+        // WHEN
+        smsCenter.sendGroupMessage(senderIdentifier, GROUP_IDENTIFIER, MESSAGE);
+
+        // THEN
+        then(smsSender).should(times(1)).send(senderPhoneNumber, senderPhoneNumber, MESSAGE);
+        then(smsSender).should(times(1)).send(senderPhoneNumber, receiverPhoneNumber, MESSAGE);
+        then(smsSender).should(times(1)).send(senderPhoneNumber, receiverPhoneNumber2, MESSAGE);
+    }
+
+    @Test
+    public void sendGroupMessageShouldSkipUnsubscribedNumbers() {
+        // GIVEN
+        String senderIdentifier = IDENTIFIER_1;
+        String senderPhoneNumber = PHONE_NUMBER_1;
+        smsCenter.register(senderIdentifier, senderPhoneNumber);
+        smsCenter.subscribe(senderIdentifier);
+
+        String receiverIdentifier = IDENTIFIER_3;
+        String receiverPhoneNumber = PHONE_NUMBER_3;
+        smsCenter.register(receiverIdentifier, receiverPhoneNumber);
+        smsCenter.subscribe(receiverIdentifier);
+        smsCenter.unsubscribe(receiverIdentifier);
+
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_1));
+
+        // WHEN
+        smsCenter.sendGroupMessage(senderIdentifier, GROUP_IDENTIFIER, MESSAGE);
+
+        // THEN
+        then(smsSender).should().send(senderPhoneNumber, senderPhoneNumber, MESSAGE);
+        then(smsSender).should(never()).send(senderPhoneNumber, receiverPhoneNumber, MESSAGE);
+    }
+
+    @Test
+    public void sendToTargetsShouldSendOnlyOnceToEveryPhone() {
+        // GIVEN
+        String senderIdentifier = IDENTIFIER_1;
+        String senderPhoneNumber = PHONE_NUMBER_1;
+        smsCenter.register(senderIdentifier, senderPhoneNumber);
+        smsCenter.subscribe(senderIdentifier);
+
+        String receiverIdentifier = IDENTIFIER_2;
+        String receiverPhoneNumber = PHONE_NUMBER_2;
+        smsCenter.register(receiverIdentifier, receiverPhoneNumber);
+        smsCenter.register("number4", receiverPhoneNumber);
+        smsCenter.subscribe(receiverIdentifier);
+
+        String receiverIdentifier2 = IDENTIFIER_3;
+        String receiverPhoneNumber2 = PHONE_NUMBER_3;
+        smsCenter.register(receiverIdentifier2, receiverPhoneNumber2);
+
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_1, PHONE_PATTERN_2));
+
+        // WHEN
+        smsCenter.sendToTargets(senderIdentifier,
+                asList(receiverIdentifier, "number4", GROUP_IDENTIFIER, receiverIdentifier2, receiverIdentifier2), MESSAGE);
+
+        // THEN
+        then(smsSender).should(times(1)).send(senderPhoneNumber, senderPhoneNumber, MESSAGE);
+        then(smsSender).should(times(1)).send(senderPhoneNumber, receiverPhoneNumber, MESSAGE);
+        then(smsSender).shouldHaveNoMoreInteractions();
+        assertThat(smsCenter.heldMessages.peek(receiverPhoneNumber2))
+                .containsExactly(new HeldMessage(senderPhoneNumber, MESSAGE));
+    }
+
+    @Test
+    public void sendToTargetsShouldFanOutGroupsInParallel() {
+        // GIVEN
+        Map<String, AtomicInteger> deliveries = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        SMSCenter parallelCenter = new SMSCenter((sender, receiver, message) -> {
+            deliveries.computeIfAbsent(receiver, key -> new AtomicInteger()).incrementAndGet();
+            threads.add(Thread.currentThread().getName());
+        });
+        parallelCenter.setFanOut(new ParallelFanOut(4, 100));
+        for (int i = 0; i < 1000; i++) {
+            parallelCenter.register("number" + i, String.format("+3699%07d", i));
+            parallelCenter.subscribe("number" + i);
+        }
+        parallelCenter.register("numberDirect", PHONE_NUMBER_2);
+        parallelCenter.subscribe("numberDirect");
+        parallelCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_1));
+
+        // WHEN
+        parallelCenter.sendToTargets("number0", asList("numberDirect", GROUP_IDENTIFIER, "number5"), MESSAGE);
+        parallelCenter.close();
+
+        // THEN
+        assertThat(deliveries).hasSize(1001).containsKey(PHONE_NUMBER_2);
+        assertThat(deliveries.values()).allMatch(count -> count.get() == 1);
+        assertThat(threads).doesNotContain(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void sendToTargetsShouldNotSendAnythingOnUnregisteredReceiver() {
+        // GIVEN
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.subscribe(IDENTIFIER_1);
+
+        // WHEN
+        Throwable thrown = catchThrowable(() ->
+                smsCenter.sendToTargets(IDENTIFIER_1, asList("broadcast", IDENTIFIER_2), MESSAGE));
+
+        // THEN
+        assertThat(thrown).hasMessage("Receiver is not registered!");
+        verifyZeroInteractions(smsSender);
+    }
+
+    @Test
+    public void subscribeShouldAddNumberToMatchingGroups() {
+        // GIVEN
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_1, PHONE_PATTERN_2));
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        smsCenter.register(IDENTIFIER_3, "+44123456789");
+
+        // WHEN
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.subscribe(IDENTIFIER_2);
+        smsCenter.subscribe(IDENTIFIER_3);
+
+        // THEN
+        assertThat(smsCenter.groupMembers.get(GROUP_IDENTIFIER)).containsOnly(PHONE_NUMBER_1, PHONE_NUMBER_2);
+    }
+
+    @Test
+    public void unsubscribeShouldRemoveNumberFromGroups() {
+        // GIVEN
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_1));
+
+        // WHEN
+        smsCenter.unsubscribe(IDENTIFIER_1);
+
+        // THEN
+        assertThat(smsCenter.groupMembers.get(GROUP_IDENTIFIER)).isEmpty();
+    }
+
+    @Test
+    public void createGroupShouldReplaceMembersOfExistingGroup() {
+        // GIVEN
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.subscribe(IDENTIFIER_2);
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_1));
+
+        // WHEN
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList(PHONE_PATTERN_2));
+
+        // THEN
+        assertThat(smsCenter.groupMembers.get(GROUP_IDENTIFIER)).containsOnly(PHONE_NUMBER_2);
+    }
+
+    @Test
+    public void subscribeShouldRemoveDeliveredHeldMessages() {
+        // GIVEN
+        String senderPhoneNumber = PHONE_NUMBER_1;
+        String receiverIdentifier = IDENTIFIER_1;
+        String receiverPhoneNumber = PHONE_NUMBER_2;
+        smsCenter.registeredNumbers.put(receiverIdentifier, receiverPhoneNumber);
+        smsCenter.heldMessages.hold(receiverPhoneNumber, new HeldMessage(senderPhoneNumber, MESSAGE));
+
+        // WHEN
+        smsCenter.subscribe(receiverIdentifier);
+        smsCenter.unsubscribe(receiverIdentifier);
+        smsCenter.subscribe(receiverIdentifier);
+
+        // THEN
+        then(smsSender).should(times(1)).send(senderPhoneNumber, receiverPhoneNumber, MESSAGE);
+        assertThat(smsCenter.heldMessages.depth(receiverPhoneNumber)).isZero();
+    }
 }
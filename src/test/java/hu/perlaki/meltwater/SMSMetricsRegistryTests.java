@@ -0,0 +1,105 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SMSMetricsRegistryTests {
+
+    private static final String MESSAGE = "MESSAGE";
+    private static final String IDENTIFIER_1 = "number1";
+    private static final String IDENTIFIER_2 = "number2";
+    private static final String IDENTIFIER_3 = "number3";
+    private static final String GROUP_IDENTIFIER = "group1";
+
+    @Mock
+    private SMSSender smsSender;
+
+    private SMSMetricsRegistry metrics;
+    private SMSCenter smsCenter;
+    private InputProcessor inputProcessor;
+
+    @Before
+    public void setup() {
+        metrics = new SMSMetricsRegistry();
+        HeldMessageStore heldMessages = new BoundedHeldMessageStore();
+        metrics.addHeldMessageStore(heldMessages);
+
+        smsCenter = new SMSCenter(new MeteredSMSSender(smsSender, metrics), heldMessages);
+        smsCenter.setMetrics(metrics);
+        inputProcessor = new InputProcessor(smsCenter, Paths.get("unused"), metrics);
+
+        process("number1 +36991212321");
+        process("number2 +36123456789");
+        process("number3 +36987654321");
+        process("subscribe number1");
+        process("subscribe number3");
+    }
+
+    @Test
+    public void snapshotShouldCountCommandsAndDeliveries() {
+        // GIVEN
+        process("group1 +369*");
+
+        // WHEN
+        process("message number1 group1,broadcast \"MESSAGE\"");
+
+        // THEN
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getProcessedCommands())
+                .containsEntry(Command.Type.REGISTER, 3L)
+                .containsEntry(Command.Type.SUBSCRIBE, 2L)
+                .containsEntry(Command.Type.GROUP, 1L)
+                .containsEntry(Command.Type.MESSAGE, 1L)
+                .containsEntry(Command.Type.UNSUBSCRIBE, 0L);
+        assertThat(snapshot.getSentMessages()).isEqualTo(2);
+        assertThat(snapshot.getFanOuts()).isEqualTo(1);
+        assertThat(snapshot.getFanOutMax()).isEqualTo(2);
+    }
+
+    @Test
+    public void snapshotShouldTrackHeldAndDrainedMessages() {
+        // GIVEN
+        smsCenter.sendMessage(IDENTIFIER_1, IDENTIFIER_2, MESSAGE);
+        smsCenter.sendMessage(IDENTIFIER_3, IDENTIFIER_2, MESSAGE);
+        assertThat(metrics.snapshot().getHeldMessages()).isEqualTo(2);
+        assertThat(metrics.snapshot().getMaxHeldQueueDepth()).isEqualTo(2);
+
+        // WHEN
+        smsCenter.subscribe(IDENTIFIER_2);
+
+        // THEN
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getHeldMessages()).isZero();
+        assertThat(snapshot.getDrainedHeldMessages()).isEqualTo(2);
+        assertThat(snapshot.getSentMessages()).isEqualTo(2);
+    }
+
+    @Test
+    public void formatShouldWriteOneLinePerSnapshot() {
+        // GIVEN
+        smsCenter.createGroup(GROUP_IDENTIFIER, singletonList("+369*"));
+        smsCenter.sendGroupMessage(IDENTIFIER_1, GROUP_IDENTIFIER, MESSAGE);
+
+        // WHEN
+        String line = MetricsFileReporter.format(metrics.snapshot());
+
+        // THEN
+        assertThat(line).endsWith("\n").containsOnlyOnce("\n");
+        assertThat(line).contains(" commands.register=3", " send.count=2", " fanout.max=2", " held.messages=0");
+    }
+
+    private void process(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        inputProcessor.processLine(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,146 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScheduledSMSSenderTests {
+
+    private static final String SENDER_PHONE_NUMBER = "+36991212321";
+    private static final String RECEIVER_PHONE_NUMBER = "+36123456789";
+    private static final String OTHER_RECEIVER_PHONE_NUMBER = "+36987654321";
+
+    private final long startNanos = System.nanoTime();
+    private final List<Delivery> deliveries = Collections.synchronizedList(new ArrayList<>());
+    private final SMSSender recordingSender = (sender, receiver, message) ->
+            deliveries.add(new Delivery(receiver, message, System.nanoTime() - startNanos));
+
+    @Test
+    public void sendShouldPaceMessagesOfSameReceiver() {
+        // GIVEN
+        ScheduledSMSSender smsSender = new ScheduledSMSSender(recordingSender, 20, ScheduledSMSSender.UNLIMITED, 1);
+
+        // WHEN
+        for (int i = 0; i < 5; i++) {
+            smsSender.send(SENDER_PHONE_NUMBER, RECEIVER_PHONE_NUMBER, String.valueOf(i));
+        }
+        smsSender.send(SENDER_PHONE_NUMBER, OTHER_RECEIVER_PHONE_NUMBER, "other");
+        smsSender.close();
+
+        // THEN
+        assertThat(deliveries).extracting(delivery -> delivery.message).containsExactly("0", "other", "1", "2", "3", "4");
+        List<Delivery> receiverDeliveries = new ArrayList<>(deliveries);
+        receiverDeliveries.removeIf(delivery -> !delivery.receiver.equals(RECEIVER_PHONE_NUMBER));
+        for (int i = 1; i < receiverDeliveries.size(); i++) {
+            assertThat(receiverDeliveries.get(i).nanos - receiverDeliveries.get(i - 1).nanos)
+                    .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertThat(smsSender.getPendingDeliveries()).isZero();
+    }
+
+    @Test
+    public void sendShouldPaceFromTheEndOfSlowHandOver() {
+        // GIVEN
+        SMSSender slowSender = (sender, receiver, message) -> {
+            recordingSender.send(sender, receiver, message);
+            long slowUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(30);
+            while(message.equals("0") && System.nanoTime() < slowUntilNanos) {
+                LockSupport.parkNanos(slowUntilNanos - System.nanoTime());
+            }
+        };
+        ScheduledSMSSender smsSender = new ScheduledSMSSender(slowSender, 20, ScheduledSMSSender.UNLIMITED, 1);
+
+        // WHEN
+        for (int i = 0; i < 3; i++) {
+            smsSender.send(SENDER_PHONE_NUMBER, RECEIVER_PHONE_NUMBER, String.valueOf(i));
+        }
+        smsSender.close();
+
+        // THEN
+        assertThat(deliveries).extracting(delivery -> delivery.message).containsExactly("0", "1", "2");
+        assertThat(deliveries.get(1).nanos - deliveries.get(0).nanos)
+                .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(80));
+        assertThat(deliveries.get(2).nanos - deliveries.get(1).nanos)
+                .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void sendShouldKeepGlobalRate() {
+        // GIVEN
+        ScheduledSMSSender smsSender = new ScheduledSMSSender(recordingSender, ScheduledSMSSender.UNLIMITED, 200, 1);
+
+        // WHEN
+        long sendNanos = System.nanoTime() - startNanos;
+        for (int i = 0; i < 40; i++) {
+            smsSender.send(SENDER_PHONE_NUMBER, "+3612345" + i, String.valueOf(i));
+        }
+        smsSender.close();
+
+        // THEN
+        assertThat(deliveries).hasSize(40);
+        // the first tick after an idle period may catch up one interval
+        assertThat(deliveries.get(39).nanos - sendNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(39 * 5 - 1));
+        for (int i = 0; i < 40; i++) {
+            assertThat(deliveries.get(i).message).isEqualTo(String.valueOf(i));
+        }
+    }
+
+    @Test
+    public void sendLaterShouldDeferMessage() {
+        // GIVEN
+        ScheduledSMSSender smsSender = new ScheduledSMSSender(recordingSender, ScheduledSMSSender.UNLIMITED,
+                ScheduledSMSSender.UNLIMITED, 1);
+
+        // WHEN
+        long sendNanos = System.nanoTime() - startNanos;
+        smsSender.sendLater(SENDER_PHONE_NUMBER, RECEIVER_PHONE_NUMBER, "later", 100);
+        smsSender.send(SENDER_PHONE_NUMBER, RECEIVER_PHONE_NUMBER, "now");
+        smsSender.close();
+
+        // THEN
+        assertThat(deliveries).extracting(delivery -> delivery.message).containsExactly("now", "later");
+        assertThat(deliveries.get(1).nanos - sendNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void subscribeShouldPaceHeldMessages() {
+        // GIVEN
+        ScheduledSMSSender smsSender = new ScheduledSMSSender(recordingSender, 50, ScheduledSMSSender.UNLIMITED, 1);
+        SMSCenter smsCenter = new SMSCenter(smsSender);
+        smsCenter.register("number1", SENDER_PHONE_NUMBER);
+        smsCenter.register("number2", RECEIVER_PHONE_NUMBER);
+        smsCenter.subscribe("number1");
+        for (int i = 0; i < 4; i++) {
+            smsCenter.sendMessage("number1", "number2", String.valueOf(i));
+        }
+
+        // WHEN
+        smsCenter.subscribe("number2");
+        smsSender.close();
+
+        // THEN
+        assertThat(deliveries).extracting(delivery -> delivery.message).containsExactly("0", "1", "2", "3");
+        for (int i = 1; i < 4; i++) {
+            assertThat(deliveries.get(i).nanos - deliveries.get(i - 1).nanos)
+                    .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+    private static class Delivery {
+        private final String receiver;
+        private final String message;
+        private final long nanos;
+
+        Delivery(String receiver, String message, long nanos) {
+            this.receiver = receiver;
+            this.message = message;
+            this.nanos = nanos;
+        }
+    }
+}
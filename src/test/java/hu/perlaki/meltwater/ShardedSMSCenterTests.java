@@ -0,0 +1,169 @@
+package hu.perlaki.meltwater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ShardedSMSCenterTests {
+
+    private static final String MESSAGE = "MESSAGE";
+    private static final String IDENTIFIER_1 = "number1";
+    private static final String IDENTIFIER_2 = "number2";
+    private static final String IDENTIFIER_3 = "number3";
+    private static final String PHONE_NUMBER_1 = "+36991212321";
+    private static final String PHONE_NUMBER_2 = "+36123456789";
+    private static final String PHONE_NUMBER_3 = "+36501234567";
+    private static final String GROUP_IDENTIFIER = "group1";
+
+    private final List<String> deliveries = Collections.synchronizedList(new ArrayList<>());
+    private final SMSSender recordingSender = (sender, receiver, message) -> deliveries.add(sender + " " + receiver);
+
+    private ShardedSMSCenter smsCenter;
+
+    @Before
+    public void setup() {
+        smsCenter = ShardedSMSCenter.withUniformPrefixes(recordingSender, "+36", 4);
+
+        smsCenter.register(IDENTIFIER_1, PHONE_NUMBER_1);
+        smsCenter.register(IDENTIFIER_2, PHONE_NUMBER_2);
+        smsCenter.register(IDENTIFIER_3, PHONE_NUMBER_3);
+    }
+
+    @After
+    public void tearDown() {
+        smsCenter.close();
+    }
+
+    @Test
+    public void shardIndexOfShouldPartitionByPrefix() {
+        // GIVEN
+
+        // WHEN
+
+        // THEN
+        assertThat(smsCenter.shardCount()).isEqualTo(4);
+        assertThat(smsCenter.shardIndexOf(PHONE_NUMBER_2)).isEqualTo(0);
+        assertThat(smsCenter.shardIndexOf(PHONE_NUMBER_3)).isEqualTo(2);
+        assertThat(smsCenter.shardIndexOf(PHONE_NUMBER_1)).isEqualTo(3);
+    }
+
+    @Test
+    public void withUniformPrefixesShouldUseMoreDigitsForManyShards() {
+        // GIVEN
+        ShardedSMSCenter manyShards = ShardedSMSCenter.withUniformPrefixes(recordingSender, "+36", 250);
+
+        // WHEN
+        List<Integer> shardIndexes = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 4) {
+            shardIndexes.add(manyShards.shardIndexOf(String.format("+36%03d123456", i)));
+        }
+        manyShards.close();
+
+        // THEN
+        assertThat(manyShards.shardCount()).isEqualTo(250);
+        assertThat(shardIndexes).doesNotHaveDuplicates().hasSize(250);
+    }
+
+    @Test
+    public void shardIndexOfShouldPlaceNumbersWithoutPrefixByOrder() {
+        // GIVEN
+
+        // WHEN
+
+        // THEN
+        assertThat(smsCenter.shardIndexOf("+11234567")).isEqualTo(0);
+        assertThat(smsCenter.shardIndexOf("06301234567")).isEqualTo(3);
+    }
+
+    @Test
+    public void sendMessageShouldHoldAndDeliverOnSubscribe() {
+        // GIVEN
+        smsCenter.subscribe(IDENTIFIER_1);
+
+        // WHEN
+        smsCenter.sendMessage(IDENTIFIER_1, IDENTIFIER_2, MESSAGE);
+        smsCenter.subscribe(IDENTIFIER_2);
+        smsCenter.close();
+
+        // THEN
+        assertThat(deliveries).containsExactly(PHONE_NUMBER_1 + " " + PHONE_NUMBER_2);
+    }
+
+    @Test
+    public void registerShouldRejectInvalidPhoneNumberOnCallerThread() {
+        // GIVEN
+
+        // WHEN
+        Throwable thrown = catchThrowable(() -> smsCenter.register("number4", "+36abc"));
+
+        // THEN
+        assertThat(thrown).hasMessageStartingWith("Phone number must be");
+        assertThat(smsCenter.registeredNumbers).doesNotContainKey("number4");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void sendMessageShouldErrorOnUnSubscribedSender() {
+        // GIVEN
+
+        // WHEN
+        smsCenter.sendMessage(IDENTIFIER_1, IDENTIFIER_2, MESSAGE);
+
+        // THEN
+    }
+
+    @Test
+    public void sendBroadcastShouldReachEveryShard() {
+        // GIVEN
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.subscribe(IDENTIFIER_2);
+        smsCenter.subscribe(IDENTIFIER_3);
+
+        // WHEN
+        smsCenter.sendBroadcast(IDENTIFIER_1, MESSAGE);
+        smsCenter.close();
+
+        // THEN
+        assertThat(deliveries).containsExactlyInAnyOrder(
+                PHONE_NUMBER_1 + " " + PHONE_NUMBER_1,
+                PHONE_NUMBER_1 + " " + PHONE_NUMBER_2,
+                PHONE_NUMBER_1 + " " + PHONE_NUMBER_3);
+    }
+
+    @Test
+    public void sendGroupMessageShouldOnlyUseOverlappingShards() {
+        // GIVEN
+        smsCenter.subscribe(IDENTIFIER_1);
+        smsCenter.subscribe(IDENTIFIER_2);
+        smsCenter.subscribe(IDENTIFIER_3);
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList("+3612*", "+369*"));
+
+        // WHEN
+        smsCenter.sendGroupMessage(IDENTIFIER_1, GROUP_IDENTIFIER, MESSAGE);
+        smsCenter.close();
+
+        // THEN
+        assertThat(smsCenter.groupShards.get(GROUP_IDENTIFIER).stream()).containsExactly(0, 3);
+        assertThat(deliveries).containsExactlyInAnyOrder(
+                PHONE_NUMBER_1 + " " + PHONE_NUMBER_1,
+                PHONE_NUMBER_1 + " " + PHONE_NUMBER_2);
+    }
+
+    @Test
+    public void createGroupShouldFanOutToAllShardsForShortPatterns() {
+        // GIVEN
+
+        // WHEN
+        smsCenter.createGroup(GROUP_IDENTIFIER, asList("+3*"));
+
+        // THEN
+        assertThat(smsCenter.groupShards.get(GROUP_IDENTIFIER).cardinality()).isEqualTo(4);
+    }
+}
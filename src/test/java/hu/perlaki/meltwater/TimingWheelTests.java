@@ -0,0 +1,123 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTests {
+
+    private final TimingWheel wheel = new TimingWheel(0);
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    public void advanceToShouldExpireTimersAtTheirDeadline() {
+        // GIVEN
+        wheel.schedule(new RecordingTimer("b"), 300);
+        wheel.schedule(new RecordingTimer("a"), 5);
+        wheel.schedule(new RecordingTimer("c"), 70_000);
+
+        // WHEN
+        wheel.advanceTo(299);
+        List<String> expiredBefore = new ArrayList<>(expired);
+        wheel.advanceTo(69_999);
+        List<String> expiredBetween = new ArrayList<>(expired);
+        wheel.advanceTo(70_000);
+
+        // THEN
+        assertThat(expiredBefore).containsExactly("a@5");
+        assertThat(expiredBetween).containsExactly("a@5", "b@300");
+        assertThat(expired).containsExactly("a@5", "b@300", "c@70000");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void advanceToShouldExpireRandomTimersInDeadlineOrder() {
+        // GIVEN
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = random.nextInt(1 << 20);
+            deadlines.add(deadline);
+            wheel.schedule(new RecordingTimer("t"), deadline);
+        }
+        // far beyond the range of the levels
+        wheel.schedule(new RecordingTimer("t"), (1L << 33) + 7);
+        deadlines.add((1L << 33) + 7);
+
+        // WHEN
+        wheel.advanceTo(1L << 34);
+
+        // THEN
+        deadlines.sort(Long::compare);
+        List<String> expected = new ArrayList<>();
+        deadlines.forEach(deadline -> expected.add("t@" + deadline));
+        assertThat(expired).isEqualTo(expected);
+    }
+
+    @Test
+    public void scheduleShouldExpireReachedDeadlineOnNextAdvance() {
+        // GIVEN
+        wheel.advanceTo(100);
+
+        // WHEN
+        wheel.schedule(new RecordingTimer("late"), 50);
+        wheel.advanceTo(100);
+
+        // THEN
+        assertThat(expired).containsExactly("late@100");
+    }
+
+    @Test
+    public void cancelShouldRemoveTimer() {
+        // GIVEN
+        RecordingTimer cancelled = new RecordingTimer("cancelled");
+        wheel.schedule(cancelled, 1_000);
+        wheel.schedule(new RecordingTimer("kept"), 1_000);
+
+        // WHEN
+        wheel.cancel(cancelled);
+        wheel.advanceTo(2_000);
+
+        // THEN
+        assertThat(expired).containsExactly("kept@1000");
+        assertThat(cancelled.isScheduled()).isFalse();
+    }
+
+    @Test
+    public void expireShouldBeAbleToRescheduleTimer() {
+        // GIVEN
+        TimingWheel.Timer repeating = new TimingWheel.Timer() {
+            @Override
+            protected void expire() {
+                expired.add("repeating@" + wheel.getCurrentTick());
+                if(expired.size() < 3) {
+                    wheel.schedule(this, wheel.getCurrentTick() + 1_000);
+                }
+            }
+        };
+        wheel.schedule(repeating, 10);
+
+        // WHEN
+        wheel.advanceTo(10_000);
+
+        // THEN
+        assertThat(expired).containsExactly("repeating@10", "repeating@1010", "repeating@2010");
+    }
+
+    private class RecordingTimer extends TimingWheel.Timer {
+        private final String name;
+
+        RecordingTimer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected void expire() {
+            expired.add(name + "@" + wheel.getCurrentTick());
+        }
+    }
+}
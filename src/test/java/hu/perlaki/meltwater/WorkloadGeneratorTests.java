@@ -0,0 +1,79 @@
+package hu.perlaki.meltwater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WorkloadGeneratorTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void generateShouldBeReproducibleWithTheSameSeed() throws IOException {
+        // GIVEN
+        WorkloadGenerator.Workload workload = smallWorkload();
+        Path first = temporaryFolder.getRoot().toPath().resolve("first.txt");
+        Path second = temporaryFolder.getRoot().toPath().resolve("second.txt");
+        Path otherSeed = temporaryFolder.getRoot().toPath().resolve("other.txt");
+
+        // WHEN
+        new WorkloadGenerator(workload).generate(first);
+        new WorkloadGenerator(workload).generate(second);
+        workload.setSeed(7);
+        new WorkloadGenerator(workload).generate(otherSeed);
+
+        // THEN
+        assertThat(Files.readAllBytes(second)).isEqualTo(Files.readAllBytes(first));
+        assertThat(Files.readAllBytes(otherSeed)).isNotEqualTo(Files.readAllBytes(first));
+    }
+
+    @Test
+    public void generatedWorkloadShouldBeProcessedWithoutErrors() {
+        // GIVEN
+        WorkloadGenerator.Workload workload = smallWorkload();
+        Path inputPath = temporaryFolder.getRoot().toPath().resolve("workload.txt");
+        long generated = new WorkloadGenerator(workload).generate(inputPath);
+
+        AtomicLong deliveries = new AtomicLong();
+        Map<Command.Type, Long> commands = new EnumMap<>(Command.Type.class);
+        SMSMetrics metrics = new SMSMetrics() {
+            @Override
+            public void commandProcessed(Command.Type type) {
+                commands.merge(type, 1L, Long::sum);
+            }
+        };
+
+        // WHEN
+        new InputProcessor(new SMSCenter((sender, receiver, message) -> deliveries.incrementAndGet()), inputPath, metrics)
+                .process();
+
+        // THEN
+        assertThat(commands.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(generated);
+        assertThat(commands.get(Command.Type.REGISTER)).isEqualTo(workload.getNumbers());
+        assertThat(commands.get(Command.Type.GROUP)).isEqualTo(workload.getGroups());
+        assertThat(commands.get(Command.Type.MESSAGE)).isEqualTo(workload.getMessages());
+        assertThat(commands.get(Command.Type.UNSUBSCRIBE)).isPositive();
+        assertThat(deliveries.get()).isGreaterThan(workload.getMessages());
+    }
+
+    private static WorkloadGenerator.Workload smallWorkload() {
+        WorkloadGenerator.Workload workload = new WorkloadGenerator.Workload();
+        workload.setNumbers(1000);
+        workload.setGroups(10);
+        workload.setMessages(5000);
+        workload.setChurnRatio(0.2);
+        workload.setGroupMessageRatio(0.1);
+        workload.setBroadcastRatio(0.01);
+        return workload;
+    }
+}